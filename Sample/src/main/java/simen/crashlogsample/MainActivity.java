@@ -5,10 +5,11 @@ import android.app.ApplicationErrorReport;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.View;
 
-import java.io.IOException;
+import com.orhanobut.logger.CrashHandler;
+import com.orhanobut.logger.Logger;
+
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
@@ -45,32 +46,7 @@ public class MainActivity extends Activity {
     }
 
     private void printStrack() {
-        int count = Thread.activeCount();
-        Thread[] cc = new Thread[count];
-        Thread.enumerate(cc);
-
-        StringBuilder builder = new StringBuilder();
-        for (Thread item : cc) {
-            Log.d(TAG, "onCreate: " + item.toString());
-            try {
-                printStackTrace(builder, "StackTrace", item.getStackTrace());
-            } catch (IOException e) {
-            }
-        }
-        System.out.println(builder.toString());
-
-    }
-
-    private void printStackTrace(Appendable msg, String indent, StackTraceElement[] stack)
-            throws IOException {
-        if (stack == null) return;
-        msg.append("\n");
-        for (int i = 0; i < stack.length; i++) {
-            msg.append(indent);
-            msg.append("\tat ");
-            msg.append(stack[i].toString());
-            msg.append("\n");
-        }
+        Logger.d(CrashHandler.getInstance().dumpThreads(CrashHandler.DEFAULT_THREAD_DUMP_BUDGET));
     }
 
     public static void reportError(Context context, Throwable e) {
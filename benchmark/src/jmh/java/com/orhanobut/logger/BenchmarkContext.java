@@ -0,0 +1,88 @@
+package com.orhanobut.logger;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import java.io.File;
+
+/**
+ * Application context for running {@link CrashHandler} on a plain JVM, files go to the given directory
+ */
+final class BenchmarkContext extends Context {
+
+    private final File filesDir;
+
+    BenchmarkContext(File filesDir) {
+        this.filesDir = filesDir;
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return new PackageManager() {
+            @Override
+            public PackageInfo getPackageInfo(String packageName, int flags) {
+                PackageInfo info = new PackageInfo();
+                info.versionCode = 1;
+                info.versionName = "1.0";
+                return info;
+            }
+
+            @Override
+            public ApplicationInfo getApplicationInfo(String packageName, int flags) {
+                return BenchmarkContext.this.getApplicationInfo();
+            }
+
+            @Override
+            public CharSequence getApplicationLabel(ApplicationInfo info) {
+                return "benchmark";
+            }
+        };
+    }
+
+    @Override
+    public String getPackageName() {
+        return "com.orhanobut.logger.benchmark";
+    }
+
+    @Override
+    public ApplicationInfo getApplicationInfo() {
+        return new ApplicationInfo();
+    }
+
+    @Override
+    public int checkSelfPermission(String permission) {
+        return PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Override
+    public File getExternalCacheDir() {
+        return filesDir;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public void startActivity(Intent intent) {
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,29 @@
+package com.orhanobut.logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Several threads logging at once, measures contention on the shared record ring
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class ConcurrentLoggerBenchmark {
+
+    @Param({"true", "false"})
+    public boolean justshowLog;
+
+    @Setup
+    public void setUp() {
+        Logger.init("BENCHMARK").setJustshowLog(justshowLog);
+    }
+
+    @Benchmark
+    public void debugWithArgs() {
+        Logger.d("request %d finished with %s", 7, "200 OK");
+    }
+}
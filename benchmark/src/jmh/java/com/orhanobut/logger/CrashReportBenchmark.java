@@ -0,0 +1,93 @@
+package com.orhanobut.logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Cost of turning a crash into a report on disk
+ */
+@State(Scope.Benchmark)
+public class CrashReportBenchmark {
+
+    private File dir;
+    private File reportDir;
+    private CrashWriter writer;
+    private byte[] header;
+    private Throwable crash;
+    private BreadcrumbRing breadcrumbs;
+    private String report;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = new File(System.getProperty("java.io.tmpdir"), "crashlog-benchmark");
+        BenchmarkContext.deleteRecursively(dir);
+        reportDir = new File(dir, "reports");
+        CrashHandler.getInstance().init(new BenchmarkContext(dir));
+        writer = new CrashWriter(reportDir);
+        header = "versionName=1.0\nversionCode=1\nMODEL=jvm\n".getBytes("UTF-8");
+        crash = new IllegalStateException("benchmark", new RuntimeException("cause"));
+        breadcrumbs = new BreadcrumbRing(Settings.DEFAULT_BREADCRUMB_CAPACITY);
+        for (int i = 0; i < breadcrumbs.getCapacity(); i++) {
+            breadcrumbs.add(System.currentTimeMillis(), 3, "BENCHMARK", "request " + i + " finished");
+        }
+        report = "java.lang.IllegalStateException: benchmark\n\tat com.example.Foo.bar(Foo.java:42)\n";
+    }
+
+    /**
+     * Keeps the disk from filling up, the crash index and temp files stay in place
+     */
+    @TearDown(Level.Iteration)
+    public void deleteReports() {
+        deleteReports(dir);
+    }
+
+    private static void deleteReports(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                deleteReports(child);
+            } else if (child.getName().startsWith("crash") && !child.getName().equals(CrashIndex.FILE_NAME)) {
+                child.delete();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkContext.deleteRecursively(dir);
+    }
+
+    /**
+     * A crash seen before, only its count in the crash index is updated
+     */
+    @Benchmark
+    public String repeatedCrash() {
+        return CrashHandler.getInstance().saveCatchInfo2File(crash);
+    }
+
+    /**
+     * A full report of a new crash rendered with the stack trace and breadcrumbs
+     */
+    @Benchmark
+    public String renderCrash() throws IOException {
+        return writer.write(header, crash, null, breadcrumbs, null);
+    }
+
+    /**
+     * A report from text that is already rendered
+     */
+    @Benchmark
+    public String textReport() {
+        return CrashHandler.getInstance().saveCatchInfo2File(report, true);
+    }
+}
@@ -0,0 +1,79 @@
+package com.orhanobut.logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single thread cost of the {@link Logger} entry points, in the plain and in the boxed format
+ */
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+
+    @Param({"true", "false"})
+    public boolean justshowLog;
+
+    private String json;
+    private String xml;
+    private String largeMessage;
+
+    @Setup
+    public void setUp() {
+        Logger.init("BENCHMARK").setJustshowLog(justshowLog);
+
+        StringBuilder builder = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i)
+                    .append("\",\"tags\":[\"a\",\"b\"],\"price\":").append(i * 1.5).append('}');
+        }
+        json = builder.append("]}").toString();
+
+        builder.setLength(0);
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><soap:Envelope xmlns:soap=\"urn:soap\"><soap:Body>");
+        for (int i = 0; i < 200; i++) {
+            builder.append("<item id=\"").append(i).append("\"><name>item ").append(i).append("</name></item>");
+        }
+        xml = builder.append("</soap:Body></soap:Envelope>").toString();
+
+        //about 1MB of text in lines of varying length, with some multibyte characters
+        builder.setLength(0);
+        for (int i = 0; builder.length() < 1024 * 1024; i++) {
+            builder.append("line ").append(i).append(" payload ü€ ");
+            for (int j = i % 50; j > 0; j--) {
+                builder.append("0123456789");
+            }
+            builder.append('\n');
+        }
+        largeMessage = builder.toString();
+    }
+
+    @Benchmark
+    public void debug() {
+        Logger.d("user logged in");
+    }
+
+    @Benchmark
+    public void debugWithArgs() {
+        Logger.d("user %s logged in after %d ms", "alice", 42);
+    }
+
+    @Benchmark
+    public void json() {
+        Logger.json(json);
+    }
+
+    @Benchmark
+    public void xml() {
+        Logger.xml(xml);
+    }
+
+    @Benchmark
+    public void largeMessage() {
+        Logger.d(largeMessage);
+    }
+}
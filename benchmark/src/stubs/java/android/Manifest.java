@@ -0,0 +1,11 @@
+package android;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public final class Manifest {
+
+    public static final class permission {
+        public static final String WRITE_EXTERNAL_STORAGE = "android.permission.WRITE_EXTERNAL_STORAGE";
+    }
+}
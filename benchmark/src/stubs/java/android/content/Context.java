@@ -0,0 +1,28 @@
+package android.content;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public abstract class Context {
+
+    public abstract Context getApplicationContext();
+
+    public abstract PackageManager getPackageManager();
+
+    public abstract String getPackageName();
+
+    public abstract ApplicationInfo getApplicationInfo();
+
+    public abstract int checkSelfPermission(String permission);
+
+    public abstract File getExternalCacheDir();
+
+    public abstract File getFilesDir();
+
+    public abstract void startActivity(Intent intent);
+}
@@ -0,0 +1,28 @@
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.net.Uri;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class Intent {
+
+    public static final String ACTION_VIEW = "android.intent.action.VIEW";
+    public static final int FLAG_ACTIVITY_NEW_TASK = 0x10000000;
+
+    public Intent(String action) {
+    }
+
+    public Intent setDataAndType(Uri data, String type) {
+        return this;
+    }
+
+    public Intent setFlags(int flags) {
+        return this;
+    }
+
+    public Object resolveActivity(PackageManager pm) {
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+package android.content.pm;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class ApplicationInfo {
+
+    public static final int FLAG_DEBUGGABLE = 1 << 1;
+
+    public int flags;
+}
@@ -0,0 +1,10 @@
+package android.content.pm;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class PackageInfo {
+
+    public int versionCode;
+    public String versionName;
+}
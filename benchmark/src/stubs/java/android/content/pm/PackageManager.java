@@ -0,0 +1,21 @@
+package android.content.pm;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public abstract class PackageManager {
+
+    public static final int GET_ACTIVITIES = 0x00000001;
+    public static final int PERMISSION_GRANTED = 0;
+
+    public static class NameNotFoundException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    public abstract PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException;
+
+    public abstract ApplicationInfo getApplicationInfo(String packageName, int flags) throws NameNotFoundException;
+
+    public abstract CharSequence getApplicationLabel(ApplicationInfo info);
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class Build {
+
+    public static final String BRAND = "generic";
+    public static final String MODEL = "jvm";
+
+    public static class VERSION {
+        public static final int SDK_INT = 23;
+    }
+
+    public static class VERSION_CODES {
+        public static final int M = 23;
+    }
+}
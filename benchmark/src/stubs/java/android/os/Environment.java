@@ -0,0 +1,20 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the Android class, reports no external storage so crashlog writes to the
+ * context's files directory
+ */
+public class Environment {
+
+    public static final String MEDIA_MOUNTED = "mounted";
+
+    public static String getExternalStorageState() {
+        return "removed";
+    }
+
+    public static File getExternalStorageDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "sdcard");
+    }
+}
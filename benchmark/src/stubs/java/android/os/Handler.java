@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class, runs nothing
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public boolean post(Runnable r) {
+        return true;
+    }
+
+    public boolean postDelayed(Runnable r, long delayMillis) {
+        return true;
+    }
+}
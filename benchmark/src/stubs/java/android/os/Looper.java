@@ -0,0 +1,32 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class Looper {
+
+    public static void prepare() {
+    }
+
+    public static void loop() {
+    }
+
+    public static Looper getMainLooper() {
+        return null;
+    }
+
+    public static Looper myLooper() {
+        return null;
+    }
+
+    public static MessageQueue myQueue() {
+        return null;
+    }
+
+    public Thread getThread() {
+        return null;
+    }
+
+    public void setMessageLogging(android.util.Printer printer) {
+    }
+}
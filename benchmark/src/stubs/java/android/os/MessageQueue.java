@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public final class MessageQueue {
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+    public void addIdleHandler(IdleHandler handler) {
+    }
+}
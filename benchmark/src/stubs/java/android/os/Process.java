@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class Process {
+
+    public static int myPid() {
+        return 0;
+    }
+
+    public static void killProcess(int pid) {
+        throw new UnsupportedOperationException("killProcess");
+    }
+}
@@ -0,0 +1,18 @@
+package android.text;
+
+/**
+ * JVM stand-in for the Android class, only what crashlog uses
+ */
+public class TextUtils {
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static boolean equals(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.toString().equals(b.toString());
+    }
+}
@@ -0,0 +1,61 @@
+package android.util;
+
+/**
+ * JVM stand-in for the Android class. Nothing is printed, the characters are only counted so
+ * the benchmarks measure the library and not the console.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private static volatile long printed;
+
+    private Log() {
+    }
+
+    public static long getPrintedCount() {
+        return printed;
+    }
+
+    public static int v(String tag, String msg) {
+        return println(VERBOSE, tag, msg);
+    }
+
+    public static int d(String tag, String msg) {
+        return println(DEBUG, tag, msg);
+    }
+
+    public static int i(String tag, String msg) {
+        return println(INFO, tag, msg);
+    }
+
+    public static int w(String tag, String msg) {
+        return println(WARN, tag, msg);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println(WARN, tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return println(ERROR, tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println(ERROR, tag, msg);
+    }
+
+    public static int wtf(String tag, String msg) {
+        return println(ASSERT, tag, msg);
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        printed += msg.length();
+        return msg.length();
+    }
+}
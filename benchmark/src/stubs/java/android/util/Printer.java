@@ -0,0 +1,9 @@
+package android.util;
+
+/**
+ * JVM stand-in for the Android interface
+ */
+public interface Printer {
+
+    void println(String x);
+}
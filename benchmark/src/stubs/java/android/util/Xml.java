@@ -0,0 +1,14 @@
+package android.util;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * JVM stand-in for the Android class, backed by kXML 2 like Android itself
+ */
+public class Xml {
+
+    public static XmlPullParser newPullParser() {
+        return new KXmlParser();
+    }
+}
@@ -0,0 +1,107 @@
+package com.orhanobut.logger;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Watches the main looper for stalls from a daemon thread.
+ * <p>
+ * Each interval the watchdog posts a single reused {@link Runnable} to the main thread that
+ * bumps a tick counter, then waits once. If the counter has not moved for longer than the
+ * threshold the main thread is stuck and one report is written for the stall; the next report
+ * can only follow after the main thread made progress again. A new tick is only posted once
+ * the previous one ran, so a stuck main thread never gets its queue flooded.
+ * <p>
+ * {@link #shutdown()} wakes the thread through a monitor and never interrupts it, an interrupt
+ * during the report's file channel io would close the channels for good.
+ */
+final class AnrWatchdog extends Thread {
+
+    /**
+     * Smallest time between two checks
+     */
+    private static final long MIN_INTERVAL = 20;
+
+    private final CrashHandler crashHandler;
+    private final Handler mainHandler;
+    private final long threshold;
+    private final long interval;
+    private final boolean allThreads;
+
+    private volatile int tick;
+    private volatile boolean tickPending;
+    private volatile boolean stopped;
+    private final Object sleepLock = new Object();
+
+    private final Runnable ticker = new Runnable() {
+        @Override
+        public void run() {
+            //only the main thread writes the counter
+            tick++;
+            tickPending = false;
+        }
+    };
+
+    /**
+     * @param threshold  milliseconds the main thread may stall before it is reported
+     * @param allThreads add the stacks of all threads to the report
+     */
+    AnrWatchdog(CrashHandler crashHandler, long threshold, boolean allThreads) {
+        super("crashlog-anr-watchdog");
+        this.crashHandler = crashHandler;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.threshold = threshold;
+        this.interval = Math.max(threshold / 5, MIN_INTERVAL);
+        this.allThreads = allThreads;
+        setDaemon(true);
+    }
+
+    long getThreshold() {
+        return threshold;
+    }
+
+    void shutdown() {
+        synchronized (sleepLock) {
+            stopped = true;
+            sleepLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        int lastTick = tick;
+        long lastProgress = System.nanoTime();
+        boolean reported = false;
+        while (!stopped) {
+            if (!tickPending) {
+                tickPending = true;
+                mainHandler.post(ticker);
+            }
+            try {
+                synchronized (sleepLock) {
+                    if (!stopped) {
+                        sleepLock.wait(interval);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            int current = tick;
+            long now = System.nanoTime();
+            if (stopped) {
+                return;
+            }
+            if (current != lastTick) {
+                lastTick = current;
+                lastProgress = now;
+                reported = false;
+                continue;
+            }
+            long stalled = (now - lastProgress) / 1000000;
+            if (!reported && stalled >= threshold && !stopped) {
+                reported = true;
+                crashHandler.reportStall(stalled, allThreads);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.orhanobut.logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Expands a file written by {@link BinaryLogWriter} back into the pretty, boxed format
+ * {@link Logger} prints, one "time level/tag: line" entry per line. Meant for offline use.
+ */
+public final class BinaryLogDecoder {
+
+    private BinaryLogDecoder() {
+    }
+
+    public static void decode(File file, Appendable out) throws IOException {
+        InputStream in = LogCompressor.openForRead(file);
+        try {
+            decode(in, out);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes records until the end of the stream. A frame cut off by a crash or damaged on disk
+     * is skipped, decoding goes on with the next frame found.
+     */
+    public static void decode(InputStream in, Appendable out) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        List<String> tags = new ArrayList<>();
+        List<String> formats = new ArrayList<>();
+        Map<Long, String> threads = new HashMap<>();
+        Calendar calendar = Calendar.getInstance();
+        StringBuilder line = new StringBuilder(256);
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[64 * 1024];
+        long time = 0;
+        try {
+            if (data.readInt() != BinaryLogWriter.FRAME) {
+                throw new IOException("not a binary log");
+            }
+        } catch (EOFException e) {
+            return;
+        }
+        do {
+            //back to right after the frame marker if the frame turns out to be broken
+            data.mark(BinaryLogWriter.MAX_FRAME_SIZE + BinaryLogWriter.FRAME_HEADER_SIZE);
+            int length;
+            try {
+                length = data.readInt();
+                int checksum = data.readInt();
+                if (length < 0 || length > BinaryLogWriter.MAX_FRAME_SIZE) {
+                    data.reset();
+                    continue;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                data.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    data.reset();
+                    continue;
+                }
+            } catch (EOFException e) {
+                //the writer was killed in the middle of a frame, a later session may follow
+                data.reset();
+                continue;
+            }
+            DataInputStream frame = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+            try {
+                int type;
+                while ((type = frame.read()) != -1) {
+                    switch (type) {
+                        case BinaryLogWriter.SESSION:
+                            if (frame.readInt() != BinaryLogWriter.MAGIC) {
+                                throw new CorruptFrameException("unknown session");
+                            }
+                            tags.clear();
+                            formats.clear();
+                            threads.clear();
+                            time = readVarLong(frame);
+                            break;
+                        case BinaryLogWriter.DEFINE_TAG:
+                            set(tags, (int) readVarLong(frame), readString(frame));
+                            break;
+                        case BinaryLogWriter.DEFINE_FORMAT:
+                            set(formats, (int) readVarLong(frame), readString(frame));
+                            break;
+                        case BinaryLogWriter.DEFINE_THREAD:
+                            long id = readVarLong(frame);
+                            threads.put(id, readString(frame));
+                            break;
+                        case BinaryLogWriter.RECORD:
+                        case BinaryLogWriter.INLINE_RECORD:
+                            int logType = frame.readUnsignedByte();
+                            time += unZigZag(readVarLong(frame));
+                            String thread = threads.get(readVarLong(frame));
+                            String tag = get(tags, (int) readVarLong(frame));
+                            String format = type == BinaryLogWriter.INLINE_RECORD
+                                    ? readString(frame) : get(formats, (int) readVarLong(frame));
+                            Object[] args = new Object[(int) readVarLong(frame)];
+                            for (int i = 0; i < args.length; i++) {
+                                args[i] = readArg(frame);
+                            }
+                            render(out, line, calendar, time, logType, tag, thread, createMessage(format, args));
+                            break;
+                        default:
+                            throw new CorruptFrameException("unknown record type " + type);
+                    }
+                }
+            } catch (EOFException | CorruptFrameException ignored) {
+                //the rest of a frame that can not be read, the checksum matched so this is not
+                //a torn write; records after it may miss their definitions
+            }
+        } while (skipToFrame(data));
+    }
+
+    /**
+     * Reads up to and including the next frame marker
+     *
+     * @return false if the stream ended first
+     */
+    private static boolean skipToFrame(InputStream in) throws IOException {
+        int window = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            window = (window << 8) | b;
+            if (window == BinaryLogWriter.FRAME) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void render(Appendable out, StringBuilder line, Calendar calendar, long time, int logType,
+                               String tag, String thread, String message) throws IOException {
+        emit(out, line, calendar, time, logType, tag, LoggerPrinter.TOP_BORDER);
+        emit(out, line, calendar, time, logType, tag, LoggerPrinter.HORIZONTAL_DOUBLE_LINE + " Thread: " + thread);
+        emit(out, line, calendar, time, logType, tag, LoggerPrinter.MIDDLE_BORDER);
+        for (String content : message.split("\n")) {
+            emit(out, line, calendar, time, logType, tag, LoggerPrinter.HORIZONTAL_DOUBLE_LINE + " " + content);
+        }
+        emit(out, line, calendar, time, logType, tag, LoggerPrinter.BOTTOM_BORDER);
+    }
+
+    private static void emit(Appendable out, StringBuilder line, Calendar calendar, long time, int logType,
+                             String tag, String chunk) throws IOException {
+        line.setLength(0);
+        FileAppender.formatLine(line, calendar, time, logType, tag, chunk);
+        out.append(line);
+    }
+
+    private static String createMessage(String format, Object[] args) {
+        if (args.length == 0) {
+            return format;
+        }
+        try {
+            return String.format(format, args);
+        } catch (IllegalFormatException e) {
+            return format + " " + Arrays.toString(args);
+        }
+    }
+
+    private static Object readArg(DataInputStream data) throws IOException {
+        int type = data.readUnsignedByte();
+        switch (type) {
+            case BinaryLogWriter.ARG_NULL:
+                return null;
+            case BinaryLogWriter.ARG_INT:
+                return (int) unZigZag(readVarLong(data));
+            case BinaryLogWriter.ARG_LONG:
+                return unZigZag(readVarLong(data));
+            case BinaryLogWriter.ARG_DOUBLE:
+                return Double.longBitsToDouble(data.readLong());
+            case BinaryLogWriter.ARG_FLOAT:
+                return Float.intBitsToFloat(data.readInt());
+            case BinaryLogWriter.ARG_BOOLEAN:
+                return data.readUnsignedByte() != 0;
+            case BinaryLogWriter.ARG_CHAR:
+                return (char) readVarLong(data);
+            case BinaryLogWriter.ARG_STRING:
+                return readString(data);
+            default:
+                throw new CorruptFrameException("unknown argument type " + type);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(data)];
+        data.readFully(bytes);
+        return new String(bytes, BinaryLogWriter.UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CorruptFrameException("malformed varint");
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void set(List<String> dictionary, int id, String value) {
+        while (dictionary.size() <= id) {
+            dictionary.add(null);
+        }
+        dictionary.set(id, value);
+    }
+
+    private static String get(List<String> dictionary, int id) {
+        return id < dictionary.size() ? dictionary.get(id) : "?";
+    }
+
+    private static final class CorruptFrameException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        CorruptFrameException(String message) {
+            super(message);
+        }
+    }
+}
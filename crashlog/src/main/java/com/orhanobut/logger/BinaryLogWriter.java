@@ -0,0 +1,345 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary log of {@link Logger} records.
+ * <p>
+ * Tags, message formats and thread names are written once into a dictionary, after that a
+ * record only stores their ids, the level, a time delta and the raw argument values. Nothing
+ * is rendered to text, {@link BinaryLogDecoder} turns the file back into the pretty format.
+ * Only formats with arguments are interned, plain messages are written inline. Once a
+ * dictionary holds {@link #MAX_DICTIONARY_SIZE} entries a new session starts with empty ones.
+ * <p>
+ * Records are encoded into an in-memory block by the thread printing records; full blocks are
+ * written to the file by a background thread, so logging threads never wait for the disk.
+ * Every block is a frame of its own: {@link #FRAME}, payload length, crc32 of the payload.
+ */
+public final class BinaryLogWriter implements LogSink {
+
+    private static final String TAG = "BinaryLogWriter";
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int MAGIC = 0x434c4231; //"CLB1"
+
+    /**
+     * Record types
+     */
+    static final int SESSION = 0;
+    static final int DEFINE_TAG = 1;
+    static final int DEFINE_FORMAT = 2;
+    static final int DEFINE_THREAD = 3;
+    static final int RECORD = 4;
+    static final int INLINE_RECORD = 5;
+
+    /**
+     * Argument types
+     */
+    static final int ARG_NULL = 0;
+    static final int ARG_INT = 1;
+    static final int ARG_LONG = 2;
+    static final int ARG_DOUBLE = 3;
+    static final int ARG_FLOAT = 4;
+    static final int ARG_BOOLEAN = 5;
+    static final int ARG_CHAR = 6;
+    static final int ARG_STRING = 7;
+
+    static final int FRAME = 0x434c4246; //"CLBF"
+    static final int FRAME_HEADER_SIZE = 12;
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    static final int MAX_DICTIONARY_SIZE = 1024;
+
+    private static final int BLOCK_SIZE = 32 * 1024;
+    private static final int MAX_PENDING_BLOCKS = 16;
+
+    private final File file;
+    private final Map<String, Integer> tags = new HashMap<>();
+    private final Map<String, Integer> formats = new HashMap<>();
+    private final Map<Long, String> threads = new HashMap<>();
+    private final BlockingQueue<byte[]> spare = new ArrayBlockingQueue<>(2);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "crashlog-binary-log");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private OutputStream out;
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int length = FRAME_HEADER_SIZE;
+    private int pendingBlocks;
+    private long lastTime;
+    private boolean started;
+    private long dropped;
+
+    /**
+     * @param file the log file, a new session is appended if it already exists
+     */
+    public BinaryLogWriter(File file) {
+        if (file == null) {
+            throw new NullPointerException("file may not be null");
+        }
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of records dropped because the disk could not keep up
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Encodes one record into the current block
+     */
+    @Override
+    public synchronized void write(LogRecord record) {
+        if (length >= BLOCK_SIZE && pendingBlocks >= MAX_PENDING_BLOCKS) {
+            //the disk can not keep up, drop whole records so no definition gets lost
+            dropped++;
+            return;
+        }
+        if (!started || tags.size() >= MAX_DICTIONARY_SIZE || formats.size() >= MAX_DICTIONARY_SIZE
+                || threads.size() >= MAX_DICTIONARY_SIZE) {
+            startSession(record.time);
+        }
+        int tagId = define(tags, DEFINE_TAG, record.tag);
+        Object[] args = record.args;
+        int count = args == null ? 0 : args.length;
+        String format = record.format == null ? "null" : record.format;
+        //a message without arguments is most likely built by the caller and never repeats
+        int formatId = count == 0 ? -1 : define(formats, DEFINE_FORMAT, format);
+        String threadName = threads.get(record.threadId);
+        if (threadName == null || !threadName.equals(record.threadName)) {
+            threads.put(record.threadId, record.threadName);
+            putByte(DEFINE_THREAD);
+            putVarLong(record.threadId);
+            putString(record.threadName);
+        }
+
+        putByte(formatId < 0 ? INLINE_RECORD : RECORD);
+        putByte(record.logType);
+        putVarLong(zigZag(record.time - lastTime));
+        lastTime = record.time;
+        putVarLong(record.threadId);
+        putVarLong(tagId);
+        if (formatId < 0) {
+            putString(format);
+        } else {
+            putVarLong(formatId);
+        }
+        putVarLong(count);
+        for (int i = 0; i < count; i++) {
+            putArg(args[i]);
+        }
+
+        if (length >= BLOCK_SIZE) {
+            submit();
+        }
+    }
+
+    /**
+     * Hands everything encoded so far to the background writer
+     */
+    public synchronized void flush() {
+        if (length > FRAME_HEADER_SIZE) {
+            submit();
+        }
+    }
+
+    /**
+     * Like {@link #flush()} but waits until the records encoded so far reached the file
+     *
+     * @return false if the timeout elapsed first
+     */
+    @Override
+    public boolean awaitFlush(long timeoutMillis) {
+        flush();
+        final CountDownLatch written = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        });
+        try {
+            return written.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void submit() {
+        if (pendingBlocks >= MAX_PENDING_BLOCKS) {
+            return;
+        }
+        final byte[] full = block;
+        final int fullLength = length;
+        byte[] next = spare.poll();
+        block = next == null ? new byte[BLOCK_SIZE] : next;
+        length = FRAME_HEADER_SIZE;
+        pendingBlocks++;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(full, fullLength);
+            }
+        });
+    }
+
+    private void write(byte[] bytes, int count) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, FRAME_HEADER_SIZE, count - FRAME_HEADER_SIZE);
+        putInt(bytes, 0, FRAME);
+        putInt(bytes, 4, count - FRAME_HEADER_SIZE);
+        putInt(bytes, 8, (int) crc.getValue());
+        try {
+            if (out == null) {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.exists()) {
+                    dir.mkdirs();
+                }
+                out = new FileOutputStream(file, true);
+            }
+            out.write(bytes, 0, count);
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while writing " + file, e);
+        } finally {
+            synchronized (this) {
+                pendingBlocks--;
+            }
+            if (bytes.length == BLOCK_SIZE) {
+                spare.offer(bytes);
+            }
+        }
+    }
+
+    private void startSession(long time) {
+        started = true;
+        tags.clear();
+        formats.clear();
+        threads.clear();
+        putByte(SESSION);
+        putInt(MAGIC);
+        putVarLong(time);
+        lastTime = time;
+    }
+
+    private int define(Map<String, Integer> dictionary, int type, String value) {
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(value, id);
+            putByte(type);
+            putVarLong(id);
+            putString(value);
+        }
+        return id;
+    }
+
+    private void putArg(Object arg) {
+        if (arg == null) {
+            putByte(ARG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            putByte(ARG_INT);
+            putVarLong(zigZag(((Number) arg).intValue()));
+        } else if (arg instanceof Long) {
+            putByte(ARG_LONG);
+            putVarLong(zigZag((Long) arg));
+        } else if (arg instanceof Double) {
+            putByte(ARG_DOUBLE);
+            putLong(Double.doubleToRawLongBits((Double) arg));
+        } else if (arg instanceof Float) {
+            putByte(ARG_FLOAT);
+            putInt(Float.floatToRawIntBits((Float) arg));
+        } else if (arg instanceof Boolean) {
+            putByte(ARG_BOOLEAN);
+            putByte((Boolean) arg ? 1 : 0);
+        } else if (arg instanceof Character) {
+            putByte(ARG_CHAR);
+            putVarLong((Character) arg);
+        } else {
+            putByte(ARG_STRING);
+            putString(String.valueOf(arg));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        putVarLong(bytes.length);
+        block = growTo(block, length + bytes.length);
+        System.arraycopy(bytes, 0, block, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putVarLong(long value) {
+        block = growTo(block, length + 10);
+        while ((value & ~0x7fL) != 0) {
+            block[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        block[length++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        block = growTo(block, length + 4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            block[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            bytes[offset++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void putLong(long value) {
+        block = growTo(block, length + 8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            block[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void putByte(int value) {
+        block = growTo(block, length + 1);
+        block[length++] = (byte) value;
+    }
+
+    private static byte[] growTo(byte[] bytes, int capacity) {
+        if (capacity <= bytes.length) {
+            return bytes;
+        }
+        byte[] grown = new byte[Math.max(capacity, bytes.length * 2)];
+        System.arraycopy(bytes, 0, grown, 0, bytes.length);
+        return grown;
+    }
+}
@@ -0,0 +1,135 @@
+package com.orhanobut.logger;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last log messages and custom breadcrumbs, kept in memory for the crash report.
+ * <p>
+ * Recording claims a sequence number with one atomic increment and publishes one immutable
+ * breadcrumb into its slot, no lock is taken. The crash handler reads each slot once and sees
+ * either a whole breadcrumb or another one, whose sequence number tells it apart; a writer
+ * that is overtaken never replaces a newer breadcrumb.
+ */
+final class BreadcrumbRing {
+
+    static final String TAG = "BREADCRUMB";
+
+    /**
+     * Longer messages are cut, so a few huge log calls can not pin megabytes until the next crash
+     */
+    static final int MAX_MESSAGE_LENGTH = 256;
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicReferenceArray<Crumb> slots;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    BreadcrumbRing(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+    }
+
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    void add(long time, int logType, String tag, String message) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        Crumb crumb = new Crumb(sequence, time, logType, tag, truncate(message));
+        while (true) {
+            Crumb current = slots.get(slot);
+            if (current != null && current.sequence > sequence) {
+                //wrapped around by a faster writer, this breadcrumb is already too old
+                return;
+            }
+            if (slots.compareAndSet(slot, current, crumb)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of at most {@link #MAX_MESSAGE_LENGTH} characters, it does not keep the
+     * long message alive
+     */
+    static String truncate(String message) {
+        if (message == null || message.length() <= MAX_MESSAGE_LENGTH) {
+            return message;
+        }
+        int end = MAX_MESSAGE_LENGTH - 3;
+        if (Character.isHighSurrogate(message.charAt(end - 1))) {
+            end--;
+        }
+        return message.substring(0, end) + "...";
+    }
+
+    /**
+     * Writes the breadcrumbs oldest first, one "time level/tag: message" entry per line
+     */
+    void copyTo(CrashWriter writer) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        Calendar calendar = Calendar.getInstance();
+        long end = next.get();
+        for (long sequence = Math.max(0, end - mask - 1); sequence < end; sequence++) {
+            if (read(sequence, line, calendar)) {
+                writer.putText(line.toString());
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #copyTo(CrashWriter)}, for the text based crash report
+     */
+    void appendTo(StringBuilder out) {
+        StringBuilder line = new StringBuilder(256);
+        Calendar calendar = Calendar.getInstance();
+        long end = next.get();
+        for (long sequence = Math.max(0, end - mask - 1); sequence < end; sequence++) {
+            if (read(sequence, line, calendar)) {
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * @return false if the slot no longer or not yet holds the sequence
+     */
+    private boolean read(long sequence, StringBuilder line, Calendar calendar) {
+        Crumb crumb = slots.get((int) sequence & mask);
+        if (crumb == null || crumb.sequence != sequence) {
+            return false;
+        }
+        line.setLength(0);
+        FileAppender.formatLine(line, calendar, crumb.time, crumb.logType, crumb.tag, crumb.message);
+        return true;
+    }
+
+    /**
+     * One breadcrumb, final fields so a reader never sees it half written
+     */
+    private static final class Crumb {
+        final long sequence;
+        final long time;
+        final int logType;
+        final String tag;
+        final String message;
+
+        Crumb(long sequence, long time, int logType, String tag, String message) {
+            this.sequence = sequence;
+            this.time = time;
+            this.logType = logType;
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.orhanobut.logger;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the code that called {@link Logger} and renders its frames for the header box.
+ * <p>
+ * The trace is taken from a {@link Throwable} created right here, that skips the thread lookup
+ * and the extra VM frames of {@link Thread#getStackTrace()} and puts the logger frames at a
+ * known place. Rendered frames are cached per call site, so a line logged again only costs the
+ * capture and a map lookup.
+ * <p>
+ * The capture itself is always a full trace: Android has no {@code StackWalker} or other way to
+ * read only the top frames, and there is no cheaper key that identifies the call site before
+ * the trace is taken. That is why callers skip it when no frames are printed and
+ * {@link Settings#setCallerInfoTags} limits it to selected tags.
+ */
+final class CallerLocator {
+
+    /**
+     * Upper bound of cached call sites, the cache starts over once it is reached
+     */
+    private static final int MAX_CACHED_FRAMES = 1024;
+
+    private static final String[] INDENTS = new String[16];
+
+    static {
+        String indent = LoggerPrinter.HORIZONTAL_DOUBLE_LINE + " ";
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = indent;
+            indent += "   ";
+        }
+    }
+
+    private static final ConcurrentHashMap<StackTraceElement, String> FRAMES = new ConcurrentHashMap<>();
+
+    private CallerLocator() {
+    }
+
+    /**
+     * Adds up to methodCount frames of the caller, outermost first
+     */
+    static void addCallerFrames(List<String> lines, int methodCount, int methodOffset) {
+        StackTraceElement[] trace = new Throwable().getStackTrace();
+        int stackOffset = getStackOffset(trace) + methodOffset;
+
+        //corresponding method count with the current stack may exceeds the stack trace. Trims the count
+        if (methodCount + stackOffset > trace.length) {
+            methodCount = trace.length - stackOffset - 1;
+        }
+
+        int depth = 0;
+        for (int i = methodCount; i > 0; i--) {
+            int stackIndex = i + stackOffset;
+            if (stackIndex >= trace.length) {
+                continue;
+            }
+            lines.add(indent(depth++) + render(trace[stackIndex]));
+        }
+    }
+
+    /**
+     * @return the index of the last logger frame, the caller is the frame after it
+     */
+    private static int getStackOffset(StackTraceElement[] trace) {
+        //frame 0 is addCallerFrames itself
+        for (int i = 1; i < trace.length; i++) {
+            String name = trace[i].getClassName();
+            if (!name.equals(LoggerPrinter.class.getName()) && !name.equals(Logger.class.getName())) {
+                return i - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static String render(StackTraceElement element) {
+        String frame = FRAMES.get(element);
+        if (frame == null) {
+            frame = getSimpleClassName(element.getClassName()) + "." + element.getMethodName()
+                    + "  (" + element.getFileName() + ":" + element.getLineNumber() + ")";
+            if (FRAMES.size() >= MAX_CACHED_FRAMES) {
+                FRAMES.clear();
+            }
+            FRAMES.put(element, frame);
+        }
+        return frame;
+    }
+
+    private static String indent(int depth) {
+        if (depth < INDENTS.length) {
+            return INDENTS[depth];
+        }
+        StringBuilder builder = new StringBuilder(INDENTS[INDENTS.length - 1]);
+        for (int i = INDENTS.length - 1; i < depth; i++) {
+            builder.append("   ");
+        }
+        return builder.toString();
+    }
+
+    private static String getSimpleClassName(String name) {
+        int lastIndex = name.lastIndexOf(".");
+        return name.substring(lastIndex + 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+
+/**
+ * All occurrences of one crash, identified by its stack trace fingerprint
+ */
+public final class CrashGroup {
+
+    private final long fingerprint;
+    private final int count;
+    private final long firstSeen;
+    private final long lastSeen;
+    private final File report;
+
+    CrashGroup(long fingerprint, int count, long firstSeen, long lastSeen, File report) {
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.report = report;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the fingerprint as 16 hex digits
+     */
+    public String getFingerprintHex() {
+        String hex = Long.toHexString(fingerprint);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * @return the full report of the first occurrence, or of the first one after that report was
+     * deleted; null if it has been deleted and the crash did not happen again since
+     */
+    public File getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return "CrashGroup{" + getFingerprintHex() + ", count=" + count + ", firstSeen=" + firstSeen
+                + ", lastSeen=" + lastSeen + ", report=" + report + "}";
+    }
+}
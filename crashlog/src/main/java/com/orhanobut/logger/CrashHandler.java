@@ -3,7 +3,6 @@ package com.orhanobut.logger;
 import android.Manifest;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -11,22 +10,31 @@ import android.content.pm.PackageManager.NameNotFoundException;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
 import android.os.Looper;
+import android.os.MessageQueue;
 import android.util.Log;
 import android.widget.Toast;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.lang.reflect.Field;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * UncaughtException处理类,当程序发生Uncaught异常的时候,有该类来接管程序,并记录错误报告.
@@ -34,7 +42,24 @@ import java.util.Map;
  */
 public class CrashHandler implements UncaughtExceptionHandler {
     public static final String TAG = "CrashHandler";
-    private static final String ClassName = "com.orhanobut.logger.CrashHandler";
+    // 默认最多等待3秒再退出
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 3000;
+    // Toast.LENGTH_SHORT 的显示时长
+    private static final long TOAST_DURATION = 2000;
+    // 获取所有线程堆栈的默认时间上限(毫秒)
+    public static final long DEFAULT_THREAD_DUMP_BUDGET = 100;
+    // 初始化阶段名,见getInitTimings
+    public static final String PHASE_INSTALL = "install";
+    public static final String PHASE_IDLE_WAIT = "idleWait";
+    public static final String PHASE_CRASH_STATE = "crashState";
+    public static final String PHASE_CRASH_DIR = "crashDir";
+    public static final String PHASE_DEVICE_INFO = "deviceInfo";
+    public static final String PHASE_CRASH_WRITER = "crashWriter";
+    public static final String PHASE_CRASH_INDEX = "crashIndex";
+    public static final String PHASE_RETENTION = "retention";
+    public static final String PHASE_COMPRESSION = "compression";
+    public static final String PHASE_CATALOG = "catalog";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
     // 系统默认的UncaughtException处理类
     private UncaughtExceptionHandler mDefaultHandler;
     // CrashHandler实例
@@ -45,10 +70,47 @@ public class CrashHandler implements UncaughtExceptionHandler {
     private boolean showToast = true;
     private boolean auto_open = false;
 
+    // 崩溃后等待各项收尾工作完成的最长时间
+    private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+    // 崩溃时需要执行的刷新操作,例如把缓冲的日志写入磁盘
+    private final List<Runnable> flushHooks = new CopyOnWriteArrayList<>();
+    // 最近一次崩溃处理的收尾情况
+    private volatile CrashShutdown shutdown;
+
     // 用来存储设备信息和异常信息
     private Map<String, String> infos = new HashMap<>();
-    // 用于格式化日期,作为日志文件名的一部分
-    private DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss");
+    // 编码好的设备信息,init之后在后台线程生成一次,崩溃时直接写入
+    private volatile byte[] deviceInfo;
+    // 日志目录,只解析一次
+    private volatile File crashDir;
+    // 崩溃报告写入器,预先分配缓冲区并打开临时文件
+    private volatile CrashWriter crashWriter;
+    // 按堆栈指纹去重的崩溃索引
+    private volatile CrashIndex crashIndex;
+    // 日志目录的保留策略,null表示不清理
+    private volatile RetentionPolicy retentionPolicy = new RetentionPolicy();
+    private volatile RetentionManager retention;
+    // 所有报告的目录,写报告时追加一条记录
+    private volatile ReportCatalog catalog;
+    // 日志文件的压缩级别,-1表示不压缩
+    private volatile int compressionLevel = LogCompressor.OFF;
+    // 崩溃标记、Context哈希和时间,固定32字节的状态文件
+    private volatile CrashState crashState;
+    private final Object crashStateLock = new Object();
+    // 后台准备是否已完成
+    private boolean deferredInitDone;
+    // 上传日志的地址和限制,endpoint为null表示不上传
+    private URL uploadEndpoint;
+    private UploadPolicy uploadPolicy;
+    private ReportUploader uploader;
+    // 崩溃报告中获取所有线程堆栈的时间上限,0表示不获取
+    private volatile long threadDumpBudget = DEFAULT_THREAD_DUMP_BUDGET;
+    // 主线程卡顿监控,未启动时为null
+    private AnrWatchdog anrWatchdog;
+    // 后台准备只启动一次
+    private final AtomicBoolean deferredInitStarted = new AtomicBoolean();
+    // 初始化各阶段的耗时(微秒)
+    private final Map<String, Long> initTimings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
 
     /**
      * 保证只有一个CrashHandler实例
@@ -71,14 +133,87 @@ public class CrashHandler implements UncaughtExceptionHandler {
     }
 
     /**
-     * 初始化
+     * 初始化,只在当前线程安装异常处理器,其余准备工作在主线程空闲后放到后台执行。
+     * 后台准备完成之前发生崩溃时,崩溃处理会在当前线程补做需要的部分
      */
     public void init(Context context) {
+        long start = System.nanoTime();
         mContext = context.getApplicationContext();
         // 获取系统默认的UncaughtException处理器
         mDefaultHandler = Thread.getDefaultUncaughtExceptionHandler();
         // 设置该CrashHandler为程序的默认处理器
         Thread.setDefaultUncaughtExceptionHandler(this);
+
+        // 等主线程空闲(通常是首帧绘制之后)再开始准备,不占用启动时间
+        final long installed = System.nanoTime();
+        if (Looper.myLooper() != null) {
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    recordInitTiming(PHASE_IDLE_WAIT, installed);
+                    startDeferredInit();
+                    return false;
+                }
+            });
+        } else {
+            startDeferredInit();
+        }
+        recordInitTiming(PHASE_INSTALL, start);
+    }
+
+    /**
+     * 在后台提前打开状态文件、收集设备信息、解析日志目录,崩溃时不再反射和查询PackageManager
+     */
+    private void startDeferredInit() {
+        if (!deferredInitStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread collector = new Thread("crashlog-init") {
+            @Override
+            public void run() {
+                getCrashState();
+                getDeviceInfo();
+                getCrashWriter();
+                getCrashIndex();
+                // 按保留策略清理旧日志,并压缩已写完的日志
+                long start = System.nanoTime();
+                RetentionManager manager = getRetention();
+                manager.trim();
+                recordInitTiming(PHASE_RETENTION, start);
+                if (compressionLevel != LogCompressor.OFF) {
+                    start = System.nanoTime();
+                    manager.compressSealed(compressionLevel);
+                    recordInitTiming(PHASE_COMPRESSION, start);
+                }
+                // 整理报告目录,去掉已删除的报告
+                start = System.nanoTime();
+                maintainCatalog(manager);
+                recordInitTiming(PHASE_CATALOG, start);
+                // 准备完成后才开始上传,上传不会在崩溃处理中进行
+                synchronized (CrashHandler.this) {
+                    deferredInitDone = true;
+                    startUploader();
+                }
+            }
+        };
+        collector.setPriority(Thread.MIN_PRIORITY);
+        collector.start();
+    }
+
+    private void recordInitTiming(String phase, long startNanos) {
+        initTimings.put(phase, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * 获取初始化各阶段的耗时,按完成顺序排列。
+     * 崩溃时才补做的阶段同样会记录,可以据此判断后台准备是否赶在崩溃之前完成
+     *
+     * @return 阶段名到耗时(微秒)的副本,阶段名见PHASE_*常量
+     */
+    public Map<String, Long> getInitTimings() {
+        synchronized (initTimings) {
+            return new LinkedHashMap<>(initTimings);
+        }
     }
 
     public boolean isInited() {
@@ -90,21 +225,27 @@ public class CrashHandler implements UncaughtExceptionHandler {
      */
     @Override
     public void uncaughtException(Thread thread, Throwable ex) {
-        if (mContext != null) {
-            SharedPreferences sharedPreferences = mContext.getSharedPreferences(ClassName, Context
-                    .MODE_PRIVATE);
-            sharedPreferences.edit().putBoolean(ClassName, true).apply(); //记录崩溃
-            sharedPreferences.edit().putInt(ClassName + "_hashcode", mContext.hashCode()).apply(); //记录崩溃
+        CrashState state = getCrashState();
+        if (state != null) {
+            try {
+                // 记录崩溃,一次写入,进程被杀也不会丢失
+                state.markCrashed(mContext.hashCode(), System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while saving crash state...", e);
+            }
         }
 
         if (!handleException(ex) && mDefaultHandler != null) {
             // 如果用户没有处理则让系统默认的异常处理器来处理
             mDefaultHandler.uncaughtException(thread, ex);
         } else {
-            try {
-                Thread.sleep(3000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            // 等待报告、Toast、自动打开和刷新操作完成,最多等待shutdownTimeout
+            CrashShutdown current = shutdown;
+            if (current != null) {
+                if (!current.await(shutdownTimeout)) {
+                    Log.w(TAG, "crash handling did not finish in " + shutdownTimeout + "ms");
+                }
+                Log.i(TAG, "crash handling timings(ms): " + current.getTimings());
             }
 
             // 退出程序
@@ -131,45 +272,240 @@ public class CrashHandler implements UncaughtExceptionHandler {
 
         ex.printStackTrace();
 
-        // 收集设备参数信息
-        collectDeviceInfo(mContext);
-        // 保存日志文件
-        final String logFilePath = saveCatchInfo2File(ex);
-        if (auto_open && mContext != null && shouldShowCrash()) {//自动打开日志文件
+        final CrashShutdown current = new CrashShutdown();
+        shutdown = current;
+        // 与写报告并行执行刷新操作
+        startFlushHooks(current);
 
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(Uri.fromFile(new File(logFilePath)), "text/plain");
-            if (viewIntent.resolveActivity(mContext.getPackageManager()) != null) {
-                viewIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                mContext.startActivity(viewIntent);
-            }
-        }
-
-        if (showToast) {// 使用Toast来显示异常信息
+        if (showToast) {// 使用Toast来显示异常信息,显示结束后通知完成
             new Thread() {
                 @Override
                 public void run() {
                     Looper.prepare();
                     Toast.makeText(mContext, "error accour",
                             Toast.LENGTH_SHORT).show();
+                    new Handler().postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            current.done(CrashShutdown.TOAST);
+                        }
+                    }, TOAST_DURATION);
                     Looper.loop();
                 }
             }.start();
+        } else {
+            current.skip(CrashShutdown.TOAST);
+        }
+
+        // 保存日志文件
+        final String logFilePath = saveCrashReport(ex, true);
+        current.done(CrashShutdown.REPORT);
+
+        if (auto_open && mContext != null && logFilePath != null && shouldShowCrash()) {//自动打开日志文件
+
+            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
+            viewIntent.setDataAndType(Uri.fromFile(new File(logFilePath)), "text/plain");
+            if (viewIntent.resolveActivity(mContext.getPackageManager()) != null) {
+                viewIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                mContext.startActivity(viewIntent);
+            }
+            current.done(CrashShutdown.AUTO_OPEN);
+        } else {
+            current.skip(CrashShutdown.AUTO_OPEN);
         }
         return true;
     }
 
+    /**
+     * 在后台线程依次执行刷新操作,包括Logger的文件输出
+     */
+    private void startFlushHooks(final CrashShutdown current) {
+        Thread flusher = new Thread("crashlog-flush") {
+            @Override
+            public void run() {
+                // 等待所有日志输出(文件、二进制日志、自定义输出等)写完
+                Logger.getSettings().awaitSinksFlushed(shutdownTimeout);
+                for (Runnable hook : flushHooks) {
+                    try {
+                        hook.run();
+                    } catch (Throwable e) {
+                        Log.e(TAG, "an error occured in flush hook", e);
+                    }
+                }
+                current.done(CrashShutdown.FLUSH);
+            }
+        };
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 注册崩溃时需要执行的刷新操作,进程会等待其执行完成或超时后再退出
+     *
+     * @param hook 在后台线程执行
+     */
+    public CrashHandler addFlushHook(Runnable hook) {
+        if (hook == null) {
+            throw new NullPointerException("hook may not be null");
+        }
+        flushHooks.add(hook);
+        return this;
+    }
+
+    public CrashHandler removeFlushHook(Runnable hook) {
+        flushHooks.remove(hook);
+        return this;
+    }
+
+    /**
+     * 崩溃后等待收尾工作完成的最长时间,所有工作完成后会立即退出
+     *
+     * @param timeoutMillis 毫秒,默认3000
+     */
+    public CrashHandler setShutdownTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout may not be negative");
+        }
+        this.shutdownTimeout = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * 最近一次崩溃处理中各阶段完成的时间
+     *
+     * @return 阶段名称到毫秒数的映射, -1表示跳过, -2表示超时未完成; 尚未发生崩溃时为空
+     */
+    public Map<String, Long> getShutdownTimings() {
+        CrashShutdown current = shutdown;
+        return current == null ? Collections.<String, Long>emptyMap() : current.getTimings();
+    }
+
+    /**
+     * 启动主线程卡顿监控,主线程超过stallThreshold没有处理消息时写一份报告,与崩溃报告保存在一起。
+     * 同一处的卡顿只写一次完整报告,之后只计数
+     *
+     * @param stallThreshold 毫秒,主线程卡住多久算一次卡顿
+     * @param allThreads     报告中是否附上所有线程的堆栈,耗时受setThreadDumpBudget限制
+     */
+    public synchronized CrashHandler startAnrWatchdog(long stallThreshold, boolean allThreads) {
+        if (!isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            throw new RuntimeException("CrashHandler has not been inited!!!");
+        }
+        if (stallThreshold <= 0) {
+            throw new IllegalArgumentException("stall threshold must be positive");
+        }
+        if (anrWatchdog != null) {
+            anrWatchdog.shutdown();
+        }
+        anrWatchdog = new AnrWatchdog(this, stallThreshold, allThreads);
+        anrWatchdog.setPriority(Thread.MAX_PRIORITY);
+        anrWatchdog.start();
+        return this;
+    }
+
+    public synchronized CrashHandler stopAnrWatchdog() {
+        if (anrWatchdog != null) {
+            anrWatchdog.shutdown();
+            anrWatchdog = null;
+        }
+        return this;
+    }
+
+    /**
+     * 在后台把日志分批压缩上传到endpoint,每个请求是一次gzip压缩的POST。
+     * 失败后按指数退避重试,进度保存在日志目录中,重启后不会重复上传。上传在初始化完成后开始,崩溃时不会上传
+     *
+     * @param endpoint null表示停止上传
+     * @param policy   每批的数量和大小、每天的流量上限以及重试间隔
+     */
+    public synchronized CrashHandler setUploadEndpoint(URL endpoint, UploadPolicy policy) {
+        if (!isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            throw new RuntimeException("CrashHandler has not been inited!!!");
+        }
+        if (endpoint != null && policy == null) {
+            throw new NullPointerException("policy may not be null");
+        }
+        if (uploader != null) {
+            uploader.stop();
+            uploader = null;
+        }
+        uploadEndpoint = endpoint;
+        uploadPolicy = policy;
+        if (deferredInitDone) {
+            startUploader();
+        }
+        return this;
+    }
+
+    /**
+     * 只在后台准备完成后调用,此时日志目录和保留策略都已就绪
+     */
+    private void startUploader() {
+        if (uploadEndpoint == null || uploader != null) {
+            return;
+        }
+        RetentionManager manager = getRetention();
+        File state = new File(getCrashDir().getParentFile(), ReportUploader.STATE_NAME);
+        uploader = new ReportUploader(manager, state, uploadEndpoint, uploadPolicy);
+        uploader.start();
+    }
+
+    /**
+     * 崩溃和卡顿报告中附上其他线程的堆栈,堆栈相同的线程合并为一项。
+     * 超出时间上限后剩余的线程只计数,不再获取堆栈
+     *
+     * @param budgetMillis 毫秒,默认100; 0表示不附上其他线程
+     */
+    public CrashHandler setThreadDumpBudget(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("budget may not be negative");
+        }
+        this.threadDumpBudget = budgetMillis;
+        return this;
+    }
+
+    /**
+     * 获取除当前线程外所有线程的堆栈,格式与崩溃报告中相同
+     *
+     * @param budgetMillis 毫秒,超出后剩余的线程只计数
+     */
+    public String dumpThreads(long budgetMillis) {
+        ThreadSnapshot threads = ThreadSnapshot.capture(budgetMillis);
+        StringBuilder sb = new StringBuilder(threads.getGroupCount() * 1024);
+        threads.appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * 由卡顿监控线程调用,以主线程当前的堆栈写一份报告
+     */
+    void reportStall(long stalledMillis, boolean allThreads) {
+        Thread main = Looper.getMainLooper().getThread();
+        MainThreadStallException ex = new MainThreadStallException(stalledMillis, main.getStackTrace());
+        Log.w(TAG, "main thread stalled for " + stalledMillis + "ms", ex);
+        saveCrashReport(ex, allThreads);
+    }
+
     private boolean shouldShowCrash() {
         if (mContext == null) {
             return false;
         }
 
-        SharedPreferences preferences = mContext.getSharedPreferences(ClassName, Context
-                .MODE_PRIVATE);
+        CrashState state = getCrashState();
+        if (state == null) {
+            return false;
+        }
         long now = System.currentTimeMillis();
-        long time = preferences.getLong(ClassName + "_time", now);
-        preferences.edit().putLong(ClassName + "_time", now).commit();
-        return now - time >= 5000;
+        long time;
+        try {
+            time = state.swapAutoOpenTime(now);
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while saving crash state...", e);
+            return false;
+        }
+        return time != 0 && now - time >= 5000;
     }
 
     /**
@@ -211,14 +547,235 @@ public class CrashHandler implements UncaughtExceptionHandler {
         for (Field field : fields) {
             try {
                 field.setAccessible(true);
-                infos.put(field.getName(), field.get(null).toString());
-                Log.d(TAG, field.getName() + " : " + field.get(null));
+                infos.put(field.getName(), String.valueOf(field.get(null)));
             } catch (Exception e) {
                 Log.e(TAG, "an error occured when collect crash info", e);
             }
         }
     }
 
+    /**
+     * 获取编码好的设备信息,尚未收集时在当前线程收集
+     *
+     * @return "key=value" 每行一项的UTF-8字节
+     */
+    private synchronized byte[] getDeviceInfo() {
+        byte[] bytes = deviceInfo;
+        if (bytes == null) {
+            long start = System.nanoTime();
+            collectDeviceInfo(mContext);
+            StringBuilder sb = new StringBuilder(1024);
+            for (Map.Entry<String, String> entry : infos.entrySet()) {
+                sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+            bytes = sb.toString().getBytes(UTF_8);
+            deviceInfo = bytes;
+            recordInitTiming(PHASE_DEVICE_INFO, start);
+        }
+        return bytes;
+    }
+
+    /**
+     * 获取日志目录,只在第一次调用时查询PackageManager
+     */
+    private File getCrashDir() {
+        File dir = crashDir;
+        if (dir == null) {
+            long start = System.nanoTime();
+            dir = new File(getFilePath());
+            crashDir = dir;
+            recordInitTiming(PHASE_CRASH_DIR, start);
+        }
+        return dir;
+    }
+
+    /**
+     * 获取崩溃报告写入器,尚未创建时在当前线程创建
+     *
+     * @return 创建失败时返回null
+     */
+    private synchronized CrashWriter getCrashWriter() {
+        CrashWriter writer = crashWriter;
+        if (writer == null) {
+            File dir = getCrashDir();
+            long start = System.nanoTime();
+            try {
+                writer = new CrashWriter(dir);
+                crashWriter = writer;
+                recordInitTiming(PHASE_CRASH_WRITER, start);
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while preparing crash writer...", e);
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * 获取崩溃索引,尚未加载时在当前线程加载
+     *
+     * @return 加载失败时返回null
+     */
+    private synchronized CrashIndex getCrashIndex() {
+        CrashIndex index = crashIndex;
+        if (index == null) {
+            File dir = getCrashDir();
+            long start = System.nanoTime();
+            try {
+                index = new CrashIndex(dir);
+                crashIndex = index;
+                recordInitTiming(PHASE_CRASH_INDEX, start);
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while loading crash index...", e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 获取崩溃状态,尚未打开时在当前线程打开
+     *
+     * @return 未初始化或打开失败时返回null
+     */
+    CrashState getCrashState() {
+        CrashState state = crashState;
+        if (state == null && mContext != null) {
+            synchronized (crashStateLock) {
+                state = crashState;
+                if (state == null) {
+                    long start = System.nanoTime();
+                    try {
+                        state = new CrashState(new File(mContext.getFilesDir(), CrashState.FILE_NAME));
+                        crashState = state;
+                        recordInitTiming(PHASE_CRASH_STATE, start);
+                    } catch (IOException e) {
+                        Log.e(TAG, "an error occured while opening crash state...", e);
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    private synchronized ReportCatalog getCatalog() {
+        ReportCatalog current = catalog;
+        if (current == null) {
+            current = new ReportCatalog(getCrashDir().getParentFile());
+            catalog = current;
+        }
+        return current;
+    }
+
+    /**
+     * 没有目录时从保留策略的清单生成,否则去掉清单中已没有的报告
+     */
+    private void maintainCatalog(RetentionManager manager) {
+        ReportCatalog current = getCatalog();
+        try {
+            if (current.exists()) {
+                current.compact(manager.getKeys());
+            } else {
+                current.rebuild(manager.listAfter(-1, Integer.MAX_VALUE));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while updating report catalog...", e);
+        }
+    }
+
+    private void addToCatalog(String report, long time, CrashReport.Type type, String exceptionClass,
+                              long fingerprint) {
+        try {
+            getCatalog().append(new File(report), time, type, exceptionClass, fingerprint);
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while updating report catalog...", e);
+        }
+    }
+
+    /**
+     * 顺序读取一次报告目录,按条件分页返回
+     */
+    List<CrashReport> queryReports(ReportQuery query) {
+        try {
+            return getCatalog().query(query);
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while reading report catalog...", e);
+            return Collections.emptyList();
+        }
+    }
+
+    private synchronized RetentionManager getRetention() {
+        RetentionManager manager = retention;
+        if (manager == null) {
+            File root = getCrashDir().getParentFile();
+            manager = new RetentionManager(root, retentionPolicy);
+            retention = manager;
+        }
+        return manager;
+    }
+
+    /**
+     * 设置日志目录的保留策略,超出限制的旧日志会在后台删除
+     *
+     * @param policy null表示不清理
+     */
+    public CrashHandler setRetentionPolicy(RetentionPolicy policy) {
+        if (!isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            throw new RuntimeException("CrashHandler has not been inited!!!");
+        }
+        this.retentionPolicy = policy;
+        RetentionManager manager = retention;
+        if (manager != null) {
+            manager.setPolicy(policy);
+        }
+        return this;
+    }
+
+    /**
+     * 设置日志文件的gzip压缩级别。普通日志直接压缩写入,崩溃报告为保证写入速度先写文本,之后在后台压缩
+     *
+     * @param level 0-9, -1表示不压缩
+     */
+    public CrashHandler setCompressionLevel(int level) {
+        if (!isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            throw new RuntimeException("CrashHandler has not been inited!!!");
+        }
+        LogCompressor.checkLevel(level);
+        this.compressionLevel = level;
+        if (level != LogCompressor.OFF && retention != null) {
+            retention.compressSealedAsync(level);
+        }
+        return this;
+    }
+
+    /**
+     * 按指纹归类的崩溃统计
+     */
+    List<CrashGroup> getCrashGroups() {
+        CrashIndex index = getCrashIndex();
+        return index == null ? Collections.<CrashGroup>emptyList() : index.getGroups();
+    }
+
+    /**
+     * 最近一次写入崩溃报告的耗时
+     *
+     * @return 纳秒, 尚未写入时为0
+     */
+    public long getLastCrashWriteNanos() {
+        CrashWriter writer = crashWriter;
+        return writer == null ? 0 : writer.getLastWriteNanos();
+    }
+
+    /**
+     * 写入崩溃报告的最长耗时
+     *
+     * @return 纳秒, 尚未写入时为0
+     */
+    public long getMaxCrashWriteNanos() {
+        CrashWriter writer = crashWriter;
+        return writer == null ? 0 : writer.getMaxWriteNanos();
+    }
+
     public boolean isDebugable() {
         if (mContext == null) {
             return false;
@@ -325,6 +882,58 @@ public class CrashHandler implements UncaughtExceptionHandler {
      * @return 返回文件名称, 便于将文件传送到服务器
      */
     public String saveCatchInfo2File(Throwable ex) {
+        return saveCrashReport(ex, false);
+    }
+
+    /**
+     * @param allThreads 是否附上其他线程的堆栈,只在写完整报告时获取
+     */
+    private String saveCrashReport(Throwable ex, boolean allThreads) {
+        // 相同的崩溃只更新索引中的次数和时间,不再重复写完整报告
+        long fingerprint = CrashIndex.fingerprint(ex);
+        long now = System.currentTimeMillis();
+        CrashIndex index = getCrashIndex();
+        if (index != null) {
+            try {
+                String report = index.recordRepeat(fingerprint, now);
+                if (report != null) {
+                    return report;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while updating crash index...", e);
+            }
+        }
+
+        long budget = threadDumpBudget;
+        ThreadSnapshot threads = allThreads && budget > 0 ? ThreadSnapshot.capture(budget) : null;
+        String report = writeCrashReport(ex, threads);
+        if (report != null) {
+            addToCatalog(report, now, CrashReport.Type.CRASH, ex.getClass().getName(), fingerprint);
+        }
+        if (report != null && index != null) {
+            try {
+                index.add(fingerprint, now, new File(report));
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while updating crash index...", e);
+            }
+        }
+        return report;
+    }
+
+    private String writeCrashReport(Throwable ex, ThreadSnapshot threads) {
+        MappedLogRing ring = Logger.getSettings().getMappedLogRing();
+        BreadcrumbRing breadcrumbs = Logger.getSettings().getBreadcrumbs();
+        CrashWriter crashWriter = getCrashWriter();
+        if (crashWriter != null) {
+            try {
+                String report = crashWriter.write(getDeviceInfo(), ex, threads, breadcrumbs, ring);
+                getRetention().record(new File(report));
+                return report;
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while writing crash file...", e);
+            }
+        }
+
         Writer writer = new StringWriter();
         PrintWriter printWriter = new PrintWriter(writer);
         ex.printStackTrace(printWriter);
@@ -335,8 +944,30 @@ public class CrashHandler implements UncaughtExceptionHandler {
             cause = cause.getCause();
         }
 
+        // 附上其他线程的堆栈
+        if (threads != null) {
+            StringBuilder sb = new StringBuilder(threads.getGroupCount() * 1024);
+            threads.appendTo(sb);
+            printWriter.append("\n---- threads ----\n").append(sb);
+        }
+
+        // 附上崩溃前的操作记录
+        if (breadcrumbs != null) {
+            StringBuilder sb = new StringBuilder(breadcrumbs.getCapacity() * 128);
+            breadcrumbs.appendTo(sb);
+            printWriter.append("\n---- breadcrumbs ----\n").append(sb);
+        }
+
+        // 附上崩溃前最近的日志
+        if (ring != null) {
+            String recent = ring.snapshot();
+            if (recent != null) {
+                printWriter.append("\n---- recent log ----\n").append(recent);
+            }
+        }
+
         printWriter.close();
-        return saveCatchInfo2File(writer.toString(), true);
+        return writeTextReport(writer.toString(), true);
     }
 
 
@@ -345,34 +976,43 @@ public class CrashHandler implements UncaughtExceptionHandler {
      * @param exception true,app异常;false,普通日志
      */
     public String saveCatchInfo2File(String result, boolean exception) {
-        StringBuffer sb = new StringBuffer();
-        for (Map.Entry<String, String> entry : infos.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            sb.append(key + "=" + value + "\n");
+        String report = writeTextReport(result, exception);
+        if (report != null) {
+            addToCatalog(report, System.currentTimeMillis(), exception ? CrashReport.Type.CRASH : CrashReport.Type.LOG,
+                    null, 0);
         }
+        return report;
+    }
 
-        sb.append(result);
-
+    private String writeTextReport(String result, boolean exception) {
         try {
+            byte[] header = getDeviceInfo();
             long timestamp = System.currentTimeMillis();
-            String time = formatter.format(new Date());
-            String fileName = "crash" + (exception ? "" : "log") + "-" + time + "-" + timestamp + ".txt";
-            String file_dir = getFilePath();
-
-            File dir = new File(file_dir);
+            File dir = getCrashDir();
             if (!dir.exists()) {
                 dir.mkdirs();
             }
-            File file = new File(file_dir + fileName);
-            if (!file.exists()) {
-                file.createNewFile();
+            String fileName = CrashWriter.newReportFile(dir, Calendar.getInstance(),
+                    "crash" + (exception ? "" : "log"), timestamp).getName();
+            int level = compressionLevel;
+            if (level != LogCompressor.OFF) {
+                fileName += LogCompressor.SUFFIX;
+            }
+            // 先写临时文件再重命名,避免留下不完整的日志文件
+            File temp = new File(dir, "." + fileName + ".tmp");
+            File file = new File(dir, fileName);
+            OutputStream fos = level == LogCompressor.OFF ? new FileOutputStream(temp)
+                    : LogCompressor.openCompressed(temp, level);
+            try {
+                fos.write(header);
+                fos.write(result.getBytes(UTF_8));
+            } finally {
+                fos.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("can not rename " + temp + " to " + file);
             }
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.write(sb.toString().getBytes());
-            // TODO: 16/8/1 在这里可以将错误报告发给开发者
-            fos.close();
-            // }
+            getRetention().record(file);
             return file.getAbsolutePath();
         } catch (Exception e) {
             Log.e(TAG, "an error occured while writing file...", e);
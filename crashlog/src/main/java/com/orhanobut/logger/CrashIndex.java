@@ -0,0 +1,223 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk index of crashes keyed by their stack trace fingerprint.
+ * <p>
+ * Only the first crash of a kind gets a full report, every repeat just updates the count and
+ * the last-seen time of its fixed-size record in place. The index is loaded once and the file
+ * is kept open, so a repeat crash costs one small positional write.
+ */
+final class CrashIndex {
+
+    static final String FILE_NAME = "crash-index.dat";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x43524958; //"CRIX"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 128;
+    private static final int NAME_SIZE = RECORD_SIZE - 30;
+
+    private static final int OFFSET_COUNT = 8;
+    private static final int OFFSET_FIRST_SEEN = 12;
+    private static final int OFFSET_LAST_SEEN = 20;
+    private static final int OFFSET_NAME_LENGTH = 28;
+    private static final int OFFSET_NAME = 30;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MAX_FRAMES = 64;
+    private static final int MAX_CAUSES = 8;
+
+    private final File dir;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final List<CrashGroup> groups = new ArrayList<>();
+    private final ByteBuffer update = ByteBuffer.allocate(RECORD_SIZE);
+
+    CrashIndex(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        file = new RandomAccessFile(new File(dir, FILE_NAME), "rw");
+        channel = file.getChannel();
+        load();
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE || header.getInt(0) != MAGIC) {
+            header.clear();
+            header.putInt(MAGIC).putInt(0).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            return;
+        }
+        //records beyond the count are from an interrupted append and are ignored
+        int count = (int) Math.min(header.getInt(4), (size - HEADER_SIZE) / RECORD_SIZE);
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        channel.read(records, HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            int offset = i * RECORD_SIZE;
+            long fingerprint = records.getLong(offset);
+            int nameLength = Math.min(records.getShort(offset + OFFSET_NAME_LENGTH), NAME_SIZE);
+            String name = new String(records.array(), offset + OFFSET_NAME, nameLength, UTF_8);
+            slots.put(fingerprint, i);
+            groups.add(new CrashGroup(fingerprint, records.getInt(offset + OFFSET_COUNT),
+                    records.getLong(offset + OFFSET_FIRST_SEEN), records.getLong(offset + OFFSET_LAST_SEEN),
+                    new File(dir, name)));
+        }
+    }
+
+    /**
+     * Counts a repeat of a known crash
+     *
+     * @return the report of the first occurrence, or null if the fingerprint is new or its report
+     * has been deleted meanwhile; the caller writes a new report and {@link #add adds} it then
+     */
+    synchronized String recordRepeat(long fingerprint, long time) throws IOException {
+        Integer slot = slots.get(fingerprint);
+        if (slot == null) {
+            return null;
+        }
+        CrashGroup old = groups.get(slot);
+        File report = resolve(old.getReport());
+        if (!report.exists()) {
+            return null;
+        }
+        CrashGroup group = new CrashGroup(fingerprint, old.getCount() + 1, old.getFirstSeen(), time,
+                old.getReport());
+        groups.set(slot, group);
+        update.clear();
+        update.putInt(group.getCount()).putLong(group.getFirstSeen()).putLong(time).flip();
+        channel.write(update, HEADER_SIZE + (long) slot * RECORD_SIZE + OFFSET_COUNT);
+        return report.getAbsolutePath();
+    }
+
+    /**
+     * @return the compressed report if the plain one was compressed in the meantime
+     */
+    private static File resolve(File report) {
+        if (!report.exists()) {
+            File compressed = new File(report.getPath() + LogCompressor.SUFFIX);
+            if (compressed.exists()) {
+                return compressed;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Adds the first occurrence of a crash, the record is written before the count is raised. A
+     * known crash whose report has been deleted keeps its slot, which then points to the new
+     * report.
+     */
+    synchronized void add(long fingerprint, long time, File report) throws IOException {
+        Integer existing = slots.get(fingerprint);
+        if (existing != null) {
+            CrashGroup old = groups.get(existing);
+            if (resolve(old.getReport()).exists()) {
+                recordRepeat(fingerprint, time);
+                return;
+            }
+            CrashGroup group = new CrashGroup(fingerprint, old.getCount() + 1, old.getFirstSeen(), time, report);
+            writeRecord(existing, group);
+            groups.set(existing, group);
+            return;
+        }
+        int slot = groups.size();
+        CrashGroup group = new CrashGroup(fingerprint, 1, time, time, report);
+        writeRecord(slot, group);
+        update.clear();
+        update.putInt(slot + 1).flip();
+        channel.write(update, 4);
+        slots.put(fingerprint, slot);
+        groups.add(group);
+    }
+
+    private void writeRecord(int slot, CrashGroup group) throws IOException {
+        byte[] name = group.getReport().getName().getBytes(UTF_8);
+        int nameLength = Math.min(name.length, NAME_SIZE);
+        update.clear();
+        update.putLong(group.getFingerprint()).putInt(group.getCount()).putLong(group.getFirstSeen())
+                .putLong(group.getLastSeen()).putShort((short) nameLength).put(name, 0, nameLength);
+        while (update.hasRemaining()) {
+            update.put((byte) 0);
+        }
+        update.flip();
+        channel.write(update, HEADER_SIZE + (long) slot * RECORD_SIZE);
+    }
+
+    /**
+     * @return all groups, the report of a group is null once it has been deleted
+     */
+    synchronized List<CrashGroup> getGroups() {
+        List<CrashGroup> result = new ArrayList<>(groups.size());
+        for (CrashGroup group : groups) {
+            File report = resolve(group.getReport());
+            if (!report.exists()) {
+                report = null;
+            }
+            result.add(report == group.getReport() ? group : new CrashGroup(group.getFingerprint(),
+                    group.getCount(), group.getFirstSeen(), group.getLastSeen(), report));
+        }
+        return result;
+    }
+
+    /**
+     * Hashes exception classes and frames without line numbers, so the same crash in a
+     * slightly different build or with a different message maps to the same fingerprint
+     */
+    static long fingerprint(Throwable ex) {
+        long hash = FNV_OFFSET;
+        int causes = 0;
+        while (ex != null && causes++ < MAX_CAUSES) {
+            hash = hash(hash, ex.getClass().getName());
+            StackTraceElement[] trace = ex.getStackTrace();
+            for (int i = 0, n = Math.min(trace.length, MAX_FRAMES); i < n; i++) {
+                hash = hash(hash, trace[i].getClassName());
+                hash = hash(hash, trace[i].getMethodName());
+            }
+            Throwable cause = ex.getCause();
+            ex = cause == ex ? null : cause;
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a over the characters, digits after a '$' are skipped so generated names such as
+     * anonymous classes and lambdas do not change the fingerprint between builds
+     */
+    private static long hash(long hash, String text) {
+        boolean generated = false;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '$') {
+                generated = true;
+            } else if (generated && c >= '0' && c <= '9') {
+                continue;
+            } else {
+                generated = false;
+            }
+            hash ^= c;
+            hash *= FNV_PRIME;
+        }
+        hash ^= '\n';
+        hash *= FNV_PRIME;
+        return hash;
+    }
+}
@@ -0,0 +1,102 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+
+/**
+ * One report listed in the report catalog, see {@link CrashUtils#queryReports}
+ */
+public final class CrashReport {
+
+    public enum Type {
+        /**
+         * Uncaught exceptions and main thread stalls, files named "crash-..."
+         */
+        CRASH,
+        /**
+         * Logs saved with {@link CrashHandler#saveCatchInfo2File(String, boolean)}, files named
+         * "crashlog-..."
+         */
+        LOG
+    }
+
+    private final File dir;
+    private final String name;
+    private final long time;
+    private final Type type;
+    private final String version;
+    private final String exceptionClass;
+    private final long fingerprint;
+    private final long size;
+
+    CrashReport(File dir, String name, long time, Type type, String version, String exceptionClass,
+                long fingerprint, long size) {
+        this.dir = dir;
+        this.name = name;
+        this.time = time;
+        this.type = type;
+        this.version = version;
+        this.exceptionClass = exceptionClass;
+        this.fingerprint = fingerprint;
+        this.size = size;
+    }
+
+    /**
+     * @return the report file, or its compressed replacement once it has been compressed
+     */
+    public File getFile() {
+        File file = new File(dir, name);
+        if (!file.exists()) {
+            File compressed = new File(dir, name + LogCompressor.SUFFIX);
+            if (compressed.exists()) {
+                return compressed;
+            }
+        }
+        return file;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the app version directory, "versionCode_versionName"
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return class name of the exception, null for logs and reports catalogued from the directory
+     */
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    /**
+     * @return the stack trace fingerprint as used by {@link CrashGroup}, 0 when unknown
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return size of the file when it was written
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "CrashReport{" + version + "/" + name + ", time=" + time + ", type=" + type
+                + ", exception=" + exceptionClass + ", size=" + size + "}";
+    }
+}
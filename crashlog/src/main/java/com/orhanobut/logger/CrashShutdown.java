@@ -0,0 +1,92 @@
+package com.orhanobut.logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion handshake between the crash handler and the work it starts before the
+ * process is killed. Every stage reports when it is done, or that it was skipped, and the
+ * handler waits for all of them or until the deadline passes, whichever comes first.
+ */
+final class CrashShutdown {
+
+    static final int REPORT = 0;
+    static final int AUTO_OPEN = 1;
+    static final int TOAST = 2;
+    static final int FLUSH = 3;
+
+    private static final String[] NAMES = {"report", "autoOpen", "toast", "flush"};
+
+    /**
+     * Duration of a stage that was skipped
+     */
+    static final long SKIPPED = -1;
+
+    /**
+     * Duration of a stage that did not finish before the deadline
+     */
+    static final long PENDING = -2;
+
+    private final long start = System.nanoTime();
+    private final CountDownLatch latch = new CountDownLatch(NAMES.length);
+    private final long[] durations = new long[NAMES.length];
+    private volatile long waited = PENDING;
+
+    CrashShutdown() {
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = PENDING;
+        }
+    }
+
+    /**
+     * Marks the stage as finished, measured from the start of the crash handling
+     */
+    void done(int stage) {
+        finish(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    void skip(int stage) {
+        finish(stage, SKIPPED);
+    }
+
+    private void finish(int stage, long duration) {
+        synchronized (durations) {
+            if (durations[stage] != PENDING) {
+                return;
+            }
+            durations[stage] = duration;
+        }
+        latch.countDown();
+    }
+
+    /**
+     * @return true if every stage finished before the deadline
+     */
+    boolean await(long timeoutMillis) {
+        boolean finished = false;
+        try {
+            finished = latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return finished;
+    }
+
+    /**
+     * @return milliseconds from the start of the crash handling until each stage finished,
+     * {@link #SKIPPED} or {@link #PENDING}, plus the total time spent under "total"
+     */
+    Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        synchronized (durations) {
+            for (int i = 0; i < NAMES.length; i++) {
+                timings.put(NAMES[i], durations[i]);
+            }
+        }
+        timings.put("total", waited);
+        return timings;
+    }
+}
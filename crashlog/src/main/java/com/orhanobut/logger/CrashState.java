@@ -0,0 +1,100 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Crash flag, context hash and timestamps in a tiny fixed-layout file.
+ * <p>
+ * The whole state is 32 bytes and is kept in memory, every change rewrites it with a single
+ * positional write. The write lands in the kernel before it returns, so it survives the
+ * process being killed right after the crash, and reading the state at startup is one small read.
+ */
+final class CrashState {
+
+    static final String FILE_NAME = "crashlog.state";
+
+    private static final int MAGIC = 0x43525354; //"CRST"
+    private static final int SIZE = 32;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CRASHED = 4;
+    private static final int OFFSET_CONTEXT_HASH = 8;
+    private static final int OFFSET_CRASH_TIME = 16;
+    private static final int OFFSET_AUTO_OPEN_TIME = 24;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer state = ByteBuffer.allocate(SIZE);
+
+    CrashState(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.file = new RandomAccessFile(file, "rw");
+        channel = this.file.getChannel();
+        if (channel.read(state, 0) != SIZE || state.getInt(OFFSET_MAGIC) != MAGIC) {
+            for (int i = 0; i < SIZE; i++) {
+                state.put(i, (byte) 0);
+            }
+            state.putInt(OFFSET_MAGIC, MAGIC);
+            write();
+        }
+    }
+
+    synchronized boolean isCrashed() {
+        return state.getInt(OFFSET_CRASHED) != 0;
+    }
+
+    synchronized int getContextHash() {
+        return state.getInt(OFFSET_CONTEXT_HASH);
+    }
+
+    synchronized long getCrashTime() {
+        return state.getLong(OFFSET_CRASH_TIME);
+    }
+
+    /**
+     * Records a crash of the process running with the given application context
+     */
+    synchronized void markCrashed(int contextHash, long time) throws IOException {
+        state.putInt(OFFSET_CRASHED, 1);
+        state.putInt(OFFSET_CONTEXT_HASH, contextHash);
+        state.putLong(OFFSET_CRASH_TIME, time);
+        write();
+    }
+
+    synchronized void clearCrashed() throws IOException {
+        state.putInt(OFFSET_CRASHED, 0);
+        state.putInt(OFFSET_CONTEXT_HASH, 0);
+        write();
+    }
+
+    /**
+     * Stores the time a report was opened automatically
+     *
+     * @return the previously stored time, 0 if there is none
+     */
+    synchronized long swapAutoOpenTime(long time) throws IOException {
+        long previous = state.getLong(OFFSET_AUTO_OPEN_TIME);
+        state.putLong(OFFSET_AUTO_OPEN_TIME, time);
+        write();
+        return previous;
+    }
+
+    synchronized void close() throws IOException {
+        file.close();
+    }
+
+    private void write() throws IOException {
+        state.clear();
+        while (state.hasRemaining()) {
+            channel.write(state, state.position());
+        }
+        state.clear();
+    }
+}
@@ -1,38 +1,91 @@
 package com.orhanobut.logger;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by zhangming on 16/8/8.
  */
 public class CrashUtils {
     private static final String TAG = "CrashUtils";
-    private static final String ClassName = "com.orhanobut.logger.CrashHandler";
 
     public static void clearCrashlog(Context context) {
         if (!CrashHandler.getInstance().isInited()) {
             Log.d(TAG, "CrashHandler has not been inited!!!");
+            // 未初始化时直接清除状态文件
+            try {
+                CrashState state = new CrashState(new File(context.getFilesDir(), CrashState.FILE_NAME));
+                try {
+                    state.clearCrashed();
+                } finally {
+                    state.close();
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while saving crash state...", e);
+            }
+            return;
         }
 
-        SharedPreferences sharedPreferences = context.getSharedPreferences(ClassName, Context
-                .MODE_PRIVATE);
-        sharedPreferences.edit().putBoolean(ClassName, false).apply();
-        sharedPreferences.edit().putInt(ClassName + "_hashcode", 0).apply();
+        CrashState state = CrashHandler.getInstance().getCrashState();
+        if (state != null) {
+            try {
+                state.clearCrashed();
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while saving crash state...", e);
+            }
+        }
     }
 
-    //判断本次启动是否从崩溃中恢复启动
+    //判断本次启动是否从崩溃中恢复启动,只读取几十字节的状态文件
     public static boolean isStartfromCrash(Context context) {
         if (!CrashHandler.getInstance().isInited()) {
             Log.d(TAG, "CrashHandler has not been inited!!!");
             return false;
         }
 
-        SharedPreferences sharedPreferences = context.getSharedPreferences(ClassName, Context
-                .MODE_PRIVATE);
-        int hashCode = sharedPreferences.getInt(ClassName + "_hashcode", 0);
-        return sharedPreferences.getBoolean(ClassName, false) && (hashCode != 0 && hashCode != context
-                .getApplicationContext().hashCode());
+        CrashState state = CrashHandler.getInstance().getCrashState();
+        if (state == null) {
+            return false;
+        }
+        int hashCode = state.getContextHash();
+        return state.isCrashed() && (hashCode != 0 && hashCode != context.getApplicationContext().hashCode());
+    }
+
+    //读取日志文件内容,压缩过的文件会边读边解压
+    public static InputStream openReport(File report) throws IOException {
+        return LogCompressor.openForRead(report);
+    }
+
+    //按堆栈指纹归类的崩溃,包含次数、首次和最近发生时间以及第一次的完整报告
+    public static List<CrashGroup> getCrashGroups(Context context) {
+        if (!CrashHandler.getInstance().isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            return Collections.emptyList();
+        }
+
+        return CrashHandler.getInstance().getCrashGroups();
+    }
+
+    //上次运行留在内存映射日志环中的最后几行日志,进程被杀死时不会写崩溃报告,只能从这里找到;
+    //未设置MappedLogRing或上次没有写入任何日志时返回null
+    public static String getRecoveredLog() {
+        MappedLogRing ring = Logger.getSettings().getMappedLogRing();
+        return ring == null ? null : ring.getRecoveredLog();
+    }
+
+    //按时间、版本和类型分页查询报告,只顺序读取一次报告目录文件,最新的在前
+    public static List<CrashReport> queryReports(Context context, ReportQuery query) {
+        if (!CrashHandler.getInstance().isInited()) {
+            Log.d(TAG, "CrashHandler has not been inited!!!");
+            return Collections.emptyList();
+        }
+
+        return CrashHandler.getInstance().queryReports(query);
     }
 }
@@ -0,0 +1,347 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+
+/**
+ * Writes crash reports with a bounded amount of work.
+ * <p>
+ * Everything the crash path needs is prepared up front: the report directory, a direct buffer
+ * and an already opened temp file. A report is encoded straight into the buffer, written to
+ * the temp file's channel and then renamed to its final name, so a half written report never
+ * shows up as a crash file.
+ */
+final class CrashWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_NAME = ".crash.tmp";
+
+    private final File dir;
+    private final File tempFile;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Calendar calendar = Calendar.getInstance();
+    private final char[] digits = new char[20];
+
+    private RandomAccessFile temp;
+    private FileChannel channel;
+
+    private long lastWriteNanos;
+    private long maxWriteNanos;
+
+    /**
+     * Creates the directory and opens the temp file, should be called off the crash path
+     */
+    CrashWriter(File dir) throws IOException {
+        this.dir = dir;
+        this.tempFile = new File(dir, TEMP_NAME);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        open();
+    }
+
+    File getDir() {
+        return dir;
+    }
+
+    long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    long getMaxWriteNanos() {
+        return maxWriteNanos;
+    }
+
+    private void open() throws IOException {
+        temp = new RandomAccessFile(tempFile, "rw");
+        temp.setLength(0);
+        channel = temp.getChannel();
+    }
+
+    /**
+     * Writes header, stack trace, the other threads, breadcrumbs and the tail of the mapped ring
+     * into a new crash file
+     *
+     * @param threads stacks of the other threads, or null to leave them out
+     * @return the path of the report
+     */
+    synchronized String write(byte[] header, Throwable ex, ThreadSnapshot threads,
+                              BreadcrumbRing breadcrumbs, MappedLogRing ring) throws IOException {
+        long start = System.nanoTime();
+        long timestamp = System.currentTimeMillis();
+        if (channel == null) {
+            open();
+        }
+        buffer.clear();
+        boolean complete = false;
+        try {
+            put(header);
+            putThrowable(ex);
+            if (threads != null) {
+                putAscii("\n---- threads ----\n");
+                threads.copyTo(this);
+            }
+            if (breadcrumbs != null) {
+                putAscii("\n---- breadcrumbs ----\n");
+                breadcrumbs.copyTo(this);
+            }
+            if (ring != null) {
+                putAscii("\n---- recent log ----\n");
+                ring.copyTo(this);
+            }
+            flushBuffer();
+            complete = true;
+        } finally {
+            if (!complete) {
+                discard();
+            }
+        }
+
+        channel.close();
+        temp.close();
+        channel = null;
+        temp = null;
+        File file = newReportFile(dir, calendar, "crash", timestamp);
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("can not rename " + tempFile + " to " + file);
+        }
+        //the next report, e.g. a stall or a crash on another thread, finds the file open again
+        reopenAsync();
+
+        long elapsed = System.nanoTime() - start;
+        lastWriteNanos = elapsed;
+        if (elapsed > maxWriteNanos) {
+            maxWriteNanos = elapsed;
+        }
+        return file.getAbsolutePath();
+    }
+
+    /**
+     * Drops what a failed report wrote, so the next report does not start with its bytes
+     */
+    private void discard() {
+        try {
+            channel.truncate(0);
+            channel.position(0);
+        } catch (IOException e) {
+            try {
+                temp.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+            temp = null;
+        }
+    }
+
+    private void reopenAsync() {
+        Thread opener = new Thread("crashlog-writer-open") {
+            @Override
+            public void run() {
+                synchronized (CrashWriter.this) {
+                    if (channel == null) {
+                        try {
+                            open();
+                        } catch (IOException ignored) {
+                            //the next write opens it on its own
+                        }
+                    }
+                }
+            }
+        };
+        opener.setDaemon(true);
+        opener.setPriority(Thread.MIN_PRIORITY);
+        opener.start();
+    }
+
+    /**
+     * @return a report file that exists neither plain nor compressed, e.g. a stall and a crash
+     * reported in the same millisecond get "...-1470025859000.txt" and "...-1470025859000-1.txt"
+     */
+    static File newReportFile(File dir, Calendar calendar, String prefix, long timestamp) {
+        for (int counter = 0; ; counter++) {
+            String name = fileName(calendar, prefix, timestamp, counter);
+            File file = new File(dir, name);
+            if (!file.exists() && !new File(dir, name + LogCompressor.SUFFIX).exists()) {
+                return file;
+            }
+        }
+    }
+
+    /**
+     * Builds names like "crash-2016-08-01-12-30-59-1470025859000.txt"
+     *
+     * @param counter appended as "-counter" before ".txt" unless it is 0
+     */
+    static String fileName(Calendar calendar, String prefix, long timestamp, int counter) {
+        calendar.setTimeInMillis(timestamp);
+        StringBuilder name = new StringBuilder(48).append(prefix).append('-')
+                .append(calendar.get(Calendar.YEAR)).append('-');
+        pad2(name, calendar.get(Calendar.MONTH) + 1).append('-');
+        pad2(name, calendar.get(Calendar.DAY_OF_MONTH)).append('-');
+        pad2(name, calendar.get(Calendar.HOUR_OF_DAY)).append('-');
+        pad2(name, calendar.get(Calendar.MINUTE)).append('-');
+        pad2(name, calendar.get(Calendar.SECOND)).append('-');
+        name.append(timestamp);
+        if (counter > 0) {
+            name.append('-').append(counter);
+        }
+        return name.append(".txt").toString();
+    }
+
+    private static StringBuilder pad2(StringBuilder out, int value) {
+        if (value < 10) {
+            out.append('0');
+        }
+        return out.append(value);
+    }
+
+    /**
+     * Same layout as {@link Throwable#printStackTrace()}, frames shared with the enclosing
+     * trace are collapsed into "... n more"
+     */
+    private void putThrowable(Throwable ex) throws IOException {
+        StackTraceElement[] enclosing = null;
+        boolean first = true;
+        int depth = 0;
+        while (ex != null && depth++ < 32) {
+            if (!first) {
+                putAscii("Caused by: ");
+            }
+            putText(ex.toString());
+            put((byte) '\n');
+            StackTraceElement[] trace = ex.getStackTrace();
+            int m = trace.length - 1;
+            int n = enclosing == null ? -1 : enclosing.length - 1;
+            while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+                m--;
+                n--;
+            }
+            int common = trace.length - 1 - m;
+            for (int i = 0; i <= m; i++) {
+                putFrame(trace[i]);
+            }
+            if (common > 0) {
+                putAscii("\t... ");
+                putInt(common);
+                putAscii(" more\n");
+            }
+            enclosing = trace;
+            first = false;
+            Throwable cause = ex.getCause();
+            ex = cause == ex ? null : cause;
+        }
+    }
+
+    void putFrame(StackTraceElement frame) throws IOException {
+        putAscii("\tat ");
+        putText(frame.getClassName());
+        put((byte) '.');
+        putText(frame.getMethodName());
+        put((byte) '(');
+        String fileName = frame.getFileName();
+        if (frame.isNativeMethod()) {
+            putAscii("Native Method");
+        } else if (fileName == null) {
+            putAscii("Unknown Source");
+        } else {
+            putText(fileName);
+            if (frame.getLineNumber() >= 0) {
+                put((byte) ':');
+                putInt(frame.getLineNumber());
+            }
+        }
+        putAscii(")\n");
+    }
+
+    void putLong(long value) throws IOException {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            putInt((int) value);
+        } else {
+            putAscii(Long.toString(value));
+        }
+    }
+
+    void putInt(int value) throws IOException {
+        //negated as a long, -Integer.MIN_VALUE does not fit into an int
+        long rest = value;
+        if (rest < 0) {
+            put((byte) '-');
+            rest = -rest;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        while (count > 0) {
+            put((byte) digits[--count]);
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * UTF-8 encodes the text into the buffer without intermediate arrays
+     */
+    void putText(String text) throws IOException {
+        if (text == null) {
+            putAscii("null");
+            return;
+        }
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                put((byte) (0xf0 | (codePoint >> 18)));
+                put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                put((byte) (0x80 | (codePoint & 0x3f)));
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put(b);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,384 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent file sink for {@link Logger}.
+ * <p>
+ * Records are handed over through a bounded queue and written by one background thread,
+ * so the calling thread never touches the file. The writer drains the queue in batches into
+ * a large buffer and flushes it when either the batch size or the flush interval is reached.
+ * When the queue is full new records are dropped and counted instead of blocking the caller.
+ * <p>
+ * Flush requests are numbered. A request is done once the writer has drained the queue after
+ * it saw the request and flushed the buffer; records queued later do not hold it up.
+ */
+public final class FileAppender implements LogSink {
+
+    private static final String TAG = "FileAppender";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Default capacity of the hand-over queue, in records
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 2048;
+
+    /**
+     * Default size of the write buffer, in chars
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Default maximum time a line may stay in the write buffer
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * Default number of sealed segments kept after rotation
+     */
+    public static final int DEFAULT_MAX_BACKUPS = 5;
+
+    private static final char[] LEVELS = {'?', '?', 'V', 'D', 'I', 'W', 'E', 'A'};
+
+    /**
+     * Queued to wake the writer up for a flush, never written
+     */
+    private static final LogRecord WAKE_UP = new LogRecord(0, "", new String[0], 0, 0, "", null, null);
+
+    private final File file;
+    private final int batchSize;
+    private final long flushInterval;
+    private final BlockingQueue<LogRecord> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile long maxFileSize;
+    private volatile int maxBackups = DEFAULT_MAX_BACKUPS;
+    private volatile int compressionLevel = LogCompressor.OFF;
+
+    private final AtomicLong flushRequests = new AtomicLong();
+    private final Object flushLock = new Object();
+    private volatile long flushesDone;
+
+    private volatile boolean closed;
+    private volatile Thread writerThread;
+
+    public FileAppender(File file) {
+        this(file, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param file          the file the lines are appended to, parent directories are created on demand
+     * @param queueCapacity maximum number of records waiting for the writer
+     * @param batchSize     size of the write buffer in chars, a full buffer is written at once
+     * @param flushInterval maximum time in milliseconds before buffered lines reach the file
+     */
+    public FileAppender(File file, int queueCapacity, int batchSize, long flushInterval) {
+        if (file == null) {
+            throw new NullPointerException("file may not be null");
+        }
+        if (queueCapacity <= 0 || batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("queueCapacity, batchSize and flushInterval must be positive");
+        }
+        this.file = file;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Seals the file once it reaches the given size and continues in a new one.
+     * Sealed segments are named "&lt;file&gt;.&lt;timestamp&gt;".
+     *
+     * @param maxFileSize size in bytes, 0 never rotates
+     */
+    public FileAppender setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    /**
+     * @param maxBackups number of sealed segments to keep, older ones are deleted
+     */
+    public FileAppender setMaxBackups(int maxBackups) {
+        this.maxBackups = maxBackups;
+        return this;
+    }
+
+    /**
+     * Compresses sealed segments with gzip in the background, they get a ".gz" suffix
+     *
+     * @param level 0-9, -1 keeps them as plain text
+     */
+    public FileAppender setCompressionLevel(int level) {
+        LogCompressor.checkLevel(level);
+        this.compressionLevel = level;
+        return this;
+    }
+
+    /**
+     * @return number of records dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Queues one record for writing, never blocks
+     */
+    @Override
+    public void write(LogRecord record) {
+        if (closed) {
+            return;
+        }
+        ensureStarted();
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Asks the writer to write everything queued so far without waiting for the flush interval
+     */
+    public void flush() {
+        requestFlush();
+    }
+
+    private long requestFlush() {
+        long request = flushRequests.incrementAndGet();
+        //a full queue means the writer is not waiting anyway
+        queue.offer(WAKE_UP);
+        return request;
+    }
+
+    /**
+     * Like {@link #flush()} but waits until the records queued so far reached the file
+     *
+     * @return false if the timeout elapsed first
+     */
+    @Override
+    public boolean awaitFlush(long timeoutMillis) {
+        Thread thread = writerThread;
+        if (thread == null) {
+            return true;
+        }
+        long request = requestFlush();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (flushLock) {
+            while (flushesDone < request) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0 || closed && !thread.isAlive()) {
+                    return flushesDone >= request;
+                }
+                try {
+                    flushLock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the remaining lines and stops the writer thread
+     */
+    public void close() {
+        closed = true;
+        flush();
+    }
+
+    private synchronized void ensureStarted() {
+        if (writerThread != null) {
+            return;
+        }
+        Thread thread = new Thread("crashlog-file-appender") {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        writerThread = thread;
+    }
+
+    private void drainLoop() {
+        List<LogRecord> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder(256);
+        Calendar calendar = Calendar.getInstance();
+        Writer writer = null;
+        long lastFlush = System.currentTimeMillis();
+        int pending = 0;
+        long fileSize;
+        try {
+            writer = openWriter();
+            fileSize = file.length();
+            while (true) {
+                //read before draining, everything queued before the request is drained below
+                long requested = flushRequests.get();
+                boolean flushRequested = requested > flushesDone;
+                long wait = Math.max(1, lastFlush + flushInterval - System.currentTimeMillis());
+                LogRecord first = null;
+                if (flushRequested) {
+                    first = queue.poll();
+                } else {
+                    try {
+                        first = queue.poll(pending == 0 ? flushInterval : wait, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ignored) {
+                        // flush() and close() queue WAKE_UP instead
+                    }
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (int i = 0, size = batch.size(); i < size; i++) {
+                        LogRecord record = batch.get(i);
+                        if (record == WAKE_UP) {
+                            continue;
+                        }
+                        for (String chunk : record.lines) {
+                            line.setLength(0);
+                            formatLine(line, calendar, record.time, record.logType, record.tag, chunk);
+                            writer.append(line);
+                            pending += line.length();
+                            fileSize += line.length();
+                        }
+                    }
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (pending > 0 && (pending >= batchSize || flushRequested || now - lastFlush >= flushInterval)) {
+                    writer.flush();
+                    pending = 0;
+                    lastFlush = now;
+                } else if (pending == 0) {
+                    lastFlush = now;
+                }
+                long limit = maxFileSize;
+                if (limit > 0 && fileSize >= limit) {
+                    writer.close();
+                    rotate();
+                    writer = openWriter();
+                    fileSize = 0;
+                    pending = 0;
+                }
+                if (flushRequested) {
+                    synchronized (flushLock) {
+                        flushesDone = requested;
+                        flushLock.notifyAll();
+                    }
+                    if (closed) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while writing " + file, e);
+            closed = true;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Seals the current file, compresses it in the background and drops the oldest segments
+     */
+    private void rotate() {
+        File sealed = new File(file.getPath() + "." + System.currentTimeMillis());
+        if (!file.renameTo(sealed)) {
+            Log.w(TAG, "can not rotate " + file);
+            return;
+        }
+        int level = compressionLevel;
+        if (level != LogCompressor.OFF) {
+            LogCompressor.compressAsync(sealed, level);
+        }
+        final int keep = maxBackups;
+        LogCompressor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteOldSegments(keep);
+            }
+        });
+    }
+
+    private void deleteOldSegments(int keep) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        final String prefix = file.getName() + ".";
+        File[] segments = dir == null ? null : dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        if (segments == null || segments.length <= keep) {
+            return;
+        }
+        //segment names end with the rotation time, so name order is age order
+        Arrays.sort(segments);
+        for (int i = 0; i < segments.length - keep; i++) {
+            segments[i].delete();
+        }
+    }
+
+    private Writer openWriter() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8), batchSize);
+    }
+
+    /**
+     * Renders "MM-dd HH:mm:ss.SSS D/tag: message", close to what logcat shows
+     */
+    static void formatLine(StringBuilder out, Calendar calendar, long time, int logType, String tag, String chunk) {
+        calendar.setTimeInMillis(time);
+        pad2(out, calendar.get(Calendar.MONTH) + 1).append('-');
+        pad2(out, calendar.get(Calendar.DAY_OF_MONTH)).append(' ');
+        pad2(out, calendar.get(Calendar.HOUR_OF_DAY)).append(':');
+        pad2(out, calendar.get(Calendar.MINUTE)).append(':');
+        pad2(out, calendar.get(Calendar.SECOND)).append('.');
+        int millis = calendar.get(Calendar.MILLISECOND);
+        if (millis < 100) {
+            out.append('0');
+        }
+        pad2(out, millis).append(' ');
+        out.append(logType >= 0 && logType < LEVELS.length ? LEVELS[logType] : 'D').append('/')
+                .append(tag).append(": ").append(chunk).append('\n');
+    }
+
+    private static StringBuilder pad2(StringBuilder out, int value) {
+        if (value < 10) {
+            out.append('0');
+        }
+        return out.append(value);
+    }
+}
@@ -0,0 +1,229 @@
+package com.orhanobut.logger;
+
+/**
+ * Re-indents json text in a single pass over its tokens, no object tree is built.
+ * <p>
+ * Long arrays and strings can be cut short and the output can be capped. Only the nesting of
+ * brackets and the termination of strings are checked, that is enough to tell json from
+ * arbitrary text without parsing it.
+ */
+final class JsonIndenter {
+
+    private final int indent;
+    private final int maxArrayItems;
+    private final int maxStringLength;
+    private final int maxLength;
+
+    /**
+     * @param maxArrayItems   items printed per array, 0 prints all
+     * @param maxStringLength characters printed per string, 0 prints all
+     * @param maxLength       characters of output, 0 for no limit
+     */
+    JsonIndenter(int indent, int maxArrayItems, int maxStringLength, int maxLength) {
+        this.indent = indent;
+        this.maxArrayItems = maxArrayItems;
+        this.maxStringLength = maxStringLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return the indented json, or null if it is not a well-formed object or array
+     */
+    String format(CharSequence json) {
+        int length = json.length();
+        int start = skipWhitespace(json, 0);
+        if (start == length || (json.charAt(start) != '{' && json.charAt(start) != '[')) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(maxLength > 0 ? Math.min(length, maxLength) + 64 : length + length / 2);
+        boolean[] arrays = new boolean[16];
+        int[] items = new int[16];
+        int depth = 0;
+        int skipDepth = -1;
+        int skipped = 0;
+        boolean closed = false;
+
+        int i = start;
+        while (i < length) {
+            if (maxLength > 0 && out.length() > maxLength) {
+                out.setLength(maxLength);
+                out.append("\n... truncated, ").append(length).append(" characters in total");
+                return out.toString();
+            }
+            char c = json.charAt(i);
+            if (isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (closed) {
+                //text after the root value
+                return null;
+            }
+            boolean skipping = skipDepth >= 0;
+            switch (c) {
+                case '{':
+                case '[':
+                    if (depth == arrays.length) {
+                        arrays = grow(arrays);
+                        items = grow(items);
+                    }
+                    arrays[depth] = c == '[';
+                    items[depth] = 0;
+                    depth++;
+                    i++;
+                    if (!skipping) {
+                        out.append(c);
+                        int next = skipWhitespace(json, i);
+                        if (next < length && json.charAt(next) != (c == '{' ? '}' : ']')) {
+                            newLine(out, depth);
+                        }
+                    }
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0 || arrays[depth - 1] != (c == ']')) {
+                        return null;
+                    }
+                    if (skipDepth == depth) {
+                        newLine(out, depth);
+                        out.append("... ").append(skipped).append(" more items");
+                        skipDepth = -1;
+                        skipping = false;
+                    }
+                    depth--;
+                    if (!skipping) {
+                        char last = out.charAt(out.length() - 1);
+                        if (last != '{' && last != '[') {
+                            newLine(out, depth);
+                        }
+                        out.append(c);
+                    }
+                    closed = depth == 0;
+                    i++;
+                    break;
+                case ',':
+                    if (depth == 0) {
+                        return null;
+                    }
+                    if (skipDepth == depth) {
+                        skipped++;
+                    } else if (!skipping) {
+                        items[depth - 1]++;
+                        if (arrays[depth - 1] && maxArrayItems > 0 && items[depth - 1] >= maxArrayItems) {
+                            skipDepth = depth;
+                            skipped = 1;
+                        } else {
+                            out.append(',');
+                            newLine(out, depth);
+                        }
+                    }
+                    i++;
+                    break;
+                case ':':
+                    if (depth == 0 || arrays[depth - 1]) {
+                        return null;
+                    }
+                    if (!skipping) {
+                        out.append(": ");
+                    }
+                    i++;
+                    break;
+                case '"':
+                    int end = findStringEnd(json, i + 1);
+                    if (end < 0) {
+                        return null;
+                    }
+                    if (!skipping) {
+                        appendString(out, json, i + 1, end);
+                    }
+                    i = end + 1;
+                    break;
+                default:
+                    if (depth == 0) {
+                        return null;
+                    }
+                    int literalEnd = i;
+                    while (literalEnd < length && !isDelimiter(json.charAt(literalEnd))) {
+                        literalEnd++;
+                    }
+                    if (!skipping) {
+                        out.append(json, i, literalEnd);
+                    }
+                    i = literalEnd;
+                    break;
+            }
+        }
+        return depth == 0 ? out.toString() : null;
+    }
+
+    /**
+     * @return the index of the closing quote, or -1 if the string is not terminated
+     */
+    private static int findStringEnd(CharSequence json, int from) {
+        for (int i = from, length = json.length(); i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void appendString(StringBuilder out, CharSequence json, int start, int end) {
+        out.append('"');
+        if (maxStringLength <= 0 || end - start <= maxStringLength) {
+            out.append(json, start, end);
+        } else {
+            int cut = start;
+            while (cut - start < maxStringLength) {
+                //never cut an escape sequence or a surrogate pair in half
+                if (json.charAt(cut) == '\\') {
+                    cut += json.charAt(cut + 1) == 'u' ? 6 : 2;
+                } else {
+                    cut += Character.isHighSurrogate(json.charAt(cut)) ? 2 : 1;
+                }
+            }
+            cut = Math.min(cut, end);
+            out.append(json, start, cut).append("...(").append(end - start).append(" chars)");
+        }
+        out.append('"');
+    }
+
+    private void newLine(StringBuilder out, int depth) {
+        out.append('\n');
+        for (int i = depth * indent; i > 0; i--) {
+            out.append(' ');
+        }
+    }
+
+    private static int skipWhitespace(CharSequence json, int from) {
+        int length = json.length();
+        while (from < length && isWhitespace(json.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean isDelimiter(char c) {
+        return isWhitespace(c) || c == ',' || c == ':' || c == '"'
+                || c == '{' || c == '}' || c == '[' || c == ']';
+    }
+
+    private static boolean[] grow(boolean[] array) {
+        boolean[] grown = new boolean[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
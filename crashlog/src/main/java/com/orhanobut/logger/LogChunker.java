@@ -0,0 +1,83 @@
+package com.orhanobut.logger;
+
+import java.util.List;
+
+/**
+ * Splits a message into the lines printed by {@link LoggerPrinter} in a single pass.
+ * <p>
+ * Lines end at "\n", "\r\n" or "\r"; a line longer than the logcat limit is cut into pieces of
+ * at most that many UTF-8 bytes, never inside a character. Each piece is copied straight from
+ * the message into a reused per-thread buffer, so the message itself is never copied whole.
+ */
+final class LogChunker {
+
+    private static final ThreadLocal<StringBuilder> LOCAL_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private LogChunker() {
+    }
+
+    /**
+     * Adds every line of the text to lines, each prefixed with the given prefix. Trailing line
+     * breaks are dropped, an empty text adds a single empty line.
+     *
+     * @param maxBytes the UTF-8 size limit of a line, not counting the prefix
+     */
+    static void split(CharSequence text, int maxBytes, String prefix, List<String> lines) {
+        int end = text.length();
+        while (end > 0 && isLineBreak(text.charAt(end - 1))) {
+            end--;
+        }
+        StringBuilder builder = LOCAL_BUILDER.get();
+        int start = 0;
+        int bytes = 0;
+        int i = 0;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isLineBreak(c)) {
+                add(lines, builder, prefix, text, start, i);
+                i += c == '\r' && i + 1 < end && text.charAt(i + 1) == '\n' ? 2 : 1;
+                start = i;
+                bytes = 0;
+                continue;
+            }
+            int charCount = 1;
+            int charBytes;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                charCount = 2;
+                charBytes = 4;
+            } else {
+                charBytes = 3;
+            }
+            if (bytes + charBytes > maxBytes && i > start) {
+                add(lines, builder, prefix, text, start, i);
+                start = i;
+                bytes = 0;
+            }
+            bytes += charBytes;
+            i += charCount;
+        }
+        if (start < end || end == 0) {
+            add(lines, builder, prefix, text, start, end);
+        }
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static void add(List<String> lines, StringBuilder builder, String prefix, CharSequence text,
+                            int start, int end) {
+        builder.setLength(0);
+        builder.append(prefix).append(text, start, end);
+        lines.add(builder.toString());
+    }
+}
@@ -0,0 +1,134 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming gzip compression for crash reports and log files
+ */
+final class LogCompressor {
+
+    private static final String TAG = "LogCompressor";
+
+    /**
+     * Compression level that disables compression
+     */
+    static final int OFF = -1;
+
+    static final String SUFFIX = ".gz";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static ExecutorService executor;
+
+    private LogCompressor() {
+    }
+
+    static void checkLevel(int level) {
+        if (level != OFF && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("level must be -1 or between 0 and 9: " + level);
+        }
+    }
+
+    static boolean isCompressed(File file) {
+        return file.getName().endsWith(SUFFIX);
+    }
+
+    /**
+     * @return a stream that compresses everything written to the file with the given level
+     */
+    static OutputStream openCompressed(File file, final int level) throws IOException {
+        return new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * @return a stream of the file's text, decompressed on the fly if the file is compressed
+     */
+    static InputStream openForRead(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (isCompressed(file)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Compresses a sealed file next to it and deletes the original afterwards
+     *
+     * @return the compressed file
+     */
+    static File compress(File source, int level) throws IOException {
+        File target = new File(source.getPath() + SUFFIX);
+        File temp = new File(source.getParentFile(), "." + target.getName() + ".tmp");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = openCompressed(temp, level);
+            try {
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("can not rename " + temp + " to " + target);
+        }
+        target.setLastModified(source.lastModified());
+        source.delete();
+        return target;
+    }
+
+    /**
+     * Compresses the file on the background thread shared by all sealed files
+     */
+    static void compressAsync(final File source, final int level) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compress(source, level);
+                } catch (IOException e) {
+                    Log.e(TAG, "an error occured while compressing " + source, e);
+                }
+            }
+        });
+    }
+
+    static synchronized void execute(Runnable task) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "crashlog-compressor");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        executor.execute(task);
+    }
+}
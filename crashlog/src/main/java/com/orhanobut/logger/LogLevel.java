@@ -1,5 +1,7 @@
 package com.orhanobut.logger;
 
+import android.util.Log;
+
 /**
  * @author Orhan Obut
  */
@@ -8,10 +10,53 @@ public enum LogLevel {
     /**
      * Prints all logs
      */
-    FULL,
+    FULL(Log.VERBOSE),
+
+    /**
+     * Prints {@link Log#VERBOSE} and above, same as {@link #FULL}
+     */
+    VERBOSE(Log.VERBOSE),
+
+    /**
+     * Prints {@link Log#DEBUG} and above
+     */
+    DEBUG(Log.DEBUG),
+
+    /**
+     * Prints {@link Log#INFO} and above
+     */
+    INFO(Log.INFO),
+
+    /**
+     * Prints {@link Log#WARN} and above
+     */
+    WARN(Log.WARN),
+
+    /**
+     * Prints {@link Log#ERROR} and above
+     */
+    ERROR(Log.ERROR),
+
+    /**
+     * Prints only {@link Log#ASSERT}, the wtf logs
+     */
+    ASSERT(Log.ASSERT),
 
     /**
      * No log will be printed
      */
-    NONE
+    NONE(Integer.MAX_VALUE);
+
+    private final int minPriority;
+
+    LogLevel(int minPriority) {
+        this.minPriority = minPriority;
+    }
+
+    /**
+     * @return the lowest {@link Log} priority printed at this level
+     */
+    public int getMinPriority() {
+        return minPriority;
+    }
 }
@@ -0,0 +1,82 @@
+package com.orhanobut.logger;
+
+/**
+ * One formatted log call, all of its lines are printed together. The same instance is handed
+ * to every {@link LogSink} and must not be changed by them.
+ */
+public final class LogRecord {
+
+    final int logType;
+    final String tag;
+    final String[] lines;
+    final long time;
+    final long threadId;
+    final String threadName;
+
+    /**
+     * The message before formatting and its arguments, used by the binary log
+     */
+    final String format;
+    final Object[] args;
+
+    LogRecord(int logType, String tag, String[] lines, long time, long threadId, String threadName,
+              String format, Object[] args) {
+        this.logType = logType;
+        this.tag = tag;
+        this.lines = lines;
+        this.time = time;
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.format = format;
+        this.args = args;
+    }
+
+    /**
+     * @return one of the {@link android.util.Log} priorities
+     */
+    public int getLogType() {
+        return logType;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    /**
+     * @return a printed line, including the box drawing unless only the message is shown
+     */
+    public String getLine(int index) {
+        return lines[index];
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return the message as passed to {@link Logger}, before the arguments were applied
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public int getArgCount() {
+        return args == null ? 0 : args.length;
+    }
+
+    public Object getArg(int index) {
+        return args[index];
+    }
+}
@@ -0,0 +1,23 @@
+package com.orhanobut.logger;
+
+/**
+ * Destination of formatted {@link LogRecord}s, registered through {@link Settings#addSink}.
+ * <p>
+ * A record is formatted once and the same instance is handed to every sink.
+ */
+public interface LogSink {
+
+    /**
+     * Called with every record that passes the sink's level filter, either on the thread
+     * printing records or on the sink's own thread if it was registered with a queue.
+     * Must not call {@link Logger}.
+     */
+    void write(LogRecord record);
+
+    /**
+     * Waits until the records written so far reached their destination
+     *
+     * @return false if the timeout elapsed first
+     */
+    boolean awaitFlush(long timeoutMillis);
+}
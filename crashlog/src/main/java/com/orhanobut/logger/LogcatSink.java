@@ -0,0 +1,46 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+/**
+ * Prints records to logcat, one entry per line
+ */
+final class LogcatSink implements LogSink {
+
+    @Override
+    public void write(LogRecord record) {
+        for (String line : record.lines) {
+            println(record.logType, record.tag, line);
+        }
+    }
+
+    private static void println(int logType, String tag, String chunk) {
+        switch (logType) {
+            case Log.ERROR:
+                Log.e(tag, chunk);
+                break;
+            case Log.INFO:
+                Log.i(tag, chunk);
+                break;
+            case Log.VERBOSE:
+                Log.v(tag, chunk);
+                break;
+            case Log.WARN:
+                Log.w(tag, chunk);
+                break;
+            case Log.ASSERT:
+                Log.wtf(tag, chunk);
+                break;
+            case Log.DEBUG:
+                // Fall through, log debug by default
+            default:
+                Log.d(tag, chunk);
+                break;
+        }
+    }
+
+    @Override
+    public boolean awaitFlush(long timeoutMillis) {
+        return true;
+    }
+}
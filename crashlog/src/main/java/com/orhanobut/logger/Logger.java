@@ -33,6 +33,13 @@ public final class Logger {
         return printer.init(tag);
     }
 
+    /**
+     * @return the settings object without changing the tag
+     */
+    public static Settings getSettings() {
+        return printer.getSettings();
+    }
+
     public static Printer t(String tag) {
         return printer.t(tag, printer.getSettings().getMethodCount());
     }
@@ -45,34 +52,105 @@ public final class Logger {
         return printer.t(tag, methodCount);
     }
 
+    /**
+     * Guards expensive log arguments in hot code, a single volatile read
+     *
+     * @param priority one of the {@link android.util.Log} priorities
+     */
+    public static boolean isLoggable(int priority) {
+        return printer.isLoggable(priority);
+    }
+
+    /**
+     * Records what the app is doing for the next crash report, nothing is printed
+     */
+    public static void breadcrumb(String message) {
+        printer.breadcrumb(message);
+    }
+
+    public static void d(String message) {
+        printer.d(message);
+    }
+
     public static void d(String message, Object... args) {
         printer.d(message, args);
     }
 
+    /**
+     * The supplier is only called if debug logs are printed at the current log level
+     */
+    public static void d(MessageSupplier supplier) {
+        printer.d(supplier);
+    }
+
+    public static void e(String message) {
+        printer.e(message);
+    }
+
     public static void e(String message, Object... args) {
         printer.e(null, message, args);
     }
 
+    public static void e(MessageSupplier supplier) {
+        printer.e(supplier);
+    }
+
     public static void e(Throwable throwable, String message, Object... args) {
         printer.e(throwable, message, args);
     }
 
+    public static void e(Throwable throwable, MessageSupplier supplier) {
+        printer.e(throwable, supplier);
+    }
+
+    public static void i(String message) {
+        printer.i(message);
+    }
+
     public static void i(String message, Object... args) {
         printer.i(message, args);
     }
 
+    public static void i(MessageSupplier supplier) {
+        printer.i(supplier);
+    }
+
+    public static void v(String message) {
+        printer.v(message);
+    }
+
     public static void v(String message, Object... args) {
         printer.v(message, args);
     }
 
+    public static void v(MessageSupplier supplier) {
+        printer.v(supplier);
+    }
+
+    public static void w(String message) {
+        printer.w(message);
+    }
+
     public static void w(String message, Object... args) {
         printer.w(message, args);
     }
 
+    public static void w(MessageSupplier supplier) {
+        printer.w(supplier);
+    }
+
+    public static void wtf(String message) {
+        printer.wtf(message);
+    }
+
     public static void wtf(String message, Object... args) {
         printer.wtf(message, args);
     }
 
+    public static void wtf(MessageSupplier supplier) {
+        printer.wtf(supplier);
+    }
+
     /**
      * Formats the json content and print it
      *
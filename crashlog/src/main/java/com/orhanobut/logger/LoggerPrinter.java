@@ -3,20 +3,12 @@ package com.orhanobut.logger;
 import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.StringReader;
-import java.io.StringWriter;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Logger is a wrapper of {@link Log}
@@ -39,9 +31,11 @@ final class LoggerPrinter implements Printer {
     private static final int JSON_INDENT = 4;
 
     /**
-     * The minimum stack trace index, starts at this class after two native calls.
+     * It is used for xml pretty print
      */
-    private static final int MIN_STACK_OFFSET = 3;
+    private static final int XML_INDENT = 2;
+
+    private static final Object[] NO_ARGS = new Object[0];
 
     /**
      * It is used to determine log settings such as method count, thread info visibility
@@ -54,12 +48,13 @@ final class LoggerPrinter implements Printer {
     private static final char TOP_LEFT_CORNER = '╔';
     private static final char BOTTOM_LEFT_CORNER = '╚';
     private static final char MIDDLE_CORNER = '╟';
-    private static final char HORIZONTAL_DOUBLE_LINE = '║';
+    static final char HORIZONTAL_DOUBLE_LINE = '║';
     private static final String DOUBLE_DIVIDER = "════════════════════════════════════════════";
     private static final String SINGLE_DIVIDER = "────────────────────────────────────────────";
-    private static final String TOP_BORDER = TOP_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
-    private static final String BOTTOM_BORDER = BOTTOM_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
-    private static final String MIDDLE_BORDER = MIDDLE_CORNER + SINGLE_DIVIDER + SINGLE_DIVIDER;
+    static final String TOP_BORDER = TOP_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
+    static final String BOTTOM_BORDER = BOTTOM_LEFT_CORNER + DOUBLE_DIVIDER + DOUBLE_DIVIDER;
+    static final String MIDDLE_BORDER = MIDDLE_CORNER + SINGLE_DIVIDER + SINGLE_DIVIDER;
+    private static final String CONTENT_PREFIX = HORIZONTAL_DOUBLE_LINE + " ";
 
     /**
      * TAG is used for the Log, the name is a little different
@@ -73,6 +68,22 @@ final class LoggerPrinter implements Printer {
     private static final ThreadLocal<String> LOCAL_TAG = new ThreadLocal<String>();
     private static final ThreadLocal<Integer> LOCAL_METHOD_COUNT = new ThreadLocal<Integer>();
 
+    /**
+     * Per-thread buffer the lines of a record are formatted into before publishing
+     */
+    private static final ThreadLocal<List<String>> LOCAL_LINES = new ThreadLocal<List<String>>() {
+        @Override
+        protected List<String> initialValue() {
+            return new ArrayList<>();
+        }
+    };
+
+    /**
+     * Formatted records waiting to be printed, and the flag owned by the thread printing them
+     */
+    private static final RecordRing RING = new RecordRing(1024);
+    private static final AtomicBoolean DRAINING = new AtomicBoolean();
+
     /**
      * It is used to change the tag
      *
@@ -104,9 +115,58 @@ final class LoggerPrinter implements Printer {
         return this;
     }
 
+    @Override
+    public boolean isLoggable(int priority) {
+        return settings.isLoggable(priority);
+    }
+
+    /**
+     * Like {@link #isLoggable(int)}, but a filtered call also drops the tag and method count set
+     * by {@link #t(String, int)}, so they do not carry over to the next call of this thread
+     */
+    private boolean shouldLog(int priority) {
+        if (settings.isLoggable(priority)) {
+            return true;
+        }
+        LOCAL_TAG.remove();
+        LOCAL_METHOD_COUNT.remove();
+        return false;
+    }
+
+    @Override
+    public void breadcrumb(String message) {
+        BreadcrumbRing breadcrumbs = settings.getBreadcrumbs();
+        if (breadcrumbs != null) {
+            breadcrumbs.add(System.currentTimeMillis(), Log.INFO, BreadcrumbRing.TAG, message);
+        }
+    }
+
+    @Override
+    public void d(String message) {
+        if (shouldLog(Log.DEBUG)) {
+            log(Log.DEBUG, message, NO_ARGS);
+        }
+    }
+
     @Override
     public void d(String message, Object... args) {
-        log(Log.DEBUG, message, args);
+        if (shouldLog(Log.DEBUG)) {
+            log(Log.DEBUG, message, args);
+        }
+    }
+
+    @Override
+    public void d(MessageSupplier supplier) {
+        if (shouldLog(Log.DEBUG)) {
+            log(Log.DEBUG, supplier.get(), NO_ARGS);
+        }
+    }
+
+    @Override
+    public void e(String message) {
+        if (shouldLog(Log.ERROR)) {
+            log(Log.ERROR, errorMessage(null, message), NO_ARGS);
+        }
     }
 
     @Override
@@ -114,8 +174,26 @@ final class LoggerPrinter implements Printer {
         e(null, message, args);
     }
 
+    @Override
+    public void e(MessageSupplier supplier) {
+        e(null, supplier);
+    }
+
     @Override
     public void e(Throwable throwable, String message, Object... args) {
+        if (shouldLog(Log.ERROR)) {
+            log(Log.ERROR, errorMessage(throwable, message), args);
+        }
+    }
+
+    @Override
+    public void e(Throwable throwable, MessageSupplier supplier) {
+        if (shouldLog(Log.ERROR)) {
+            log(Log.ERROR, errorMessage(throwable, supplier == null ? null : supplier.get()), NO_ARGS);
+        }
+    }
+
+    private String errorMessage(Throwable throwable, String message) {
         if (throwable != null && message != null) {
             message += " : " + throwable.toString();
         }
@@ -125,27 +203,91 @@ final class LoggerPrinter implements Printer {
         if (message == null) {
             message = "No message/exception is set";
         }
-        log(Log.ERROR, message, args);
+        return message;
+    }
+
+    @Override
+    public void w(String message) {
+        if (shouldLog(Log.WARN)) {
+            log(Log.WARN, message, NO_ARGS);
+        }
     }
 
     @Override
     public void w(String message, Object... args) {
-        log(Log.WARN, message, args);
+        if (shouldLog(Log.WARN)) {
+            log(Log.WARN, message, args);
+        }
+    }
+
+    @Override
+    public void w(MessageSupplier supplier) {
+        if (shouldLog(Log.WARN)) {
+            log(Log.WARN, supplier.get(), NO_ARGS);
+        }
+    }
+
+    @Override
+    public void i(String message) {
+        if (shouldLog(Log.INFO)) {
+            log(Log.INFO, message, NO_ARGS);
+        }
     }
 
     @Override
     public void i(String message, Object... args) {
-        log(Log.INFO, message, args);
+        if (shouldLog(Log.INFO)) {
+            log(Log.INFO, message, args);
+        }
+    }
+
+    @Override
+    public void i(MessageSupplier supplier) {
+        if (shouldLog(Log.INFO)) {
+            log(Log.INFO, supplier.get(), NO_ARGS);
+        }
+    }
+
+    @Override
+    public void v(String message) {
+        if (shouldLog(Log.VERBOSE)) {
+            log(Log.VERBOSE, message, NO_ARGS);
+        }
     }
 
     @Override
     public void v(String message, Object... args) {
-        log(Log.VERBOSE, message, args);
+        if (shouldLog(Log.VERBOSE)) {
+            log(Log.VERBOSE, message, args);
+        }
+    }
+
+    @Override
+    public void v(MessageSupplier supplier) {
+        if (shouldLog(Log.VERBOSE)) {
+            log(Log.VERBOSE, supplier.get(), NO_ARGS);
+        }
+    }
+
+    @Override
+    public void wtf(String message) {
+        if (shouldLog(Log.ASSERT)) {
+            log(Log.ASSERT, message, NO_ARGS);
+        }
     }
 
     @Override
     public void wtf(String message, Object... args) {
-        log(Log.ASSERT, message, args);
+        if (shouldLog(Log.ASSERT)) {
+            log(Log.ASSERT, message, args);
+        }
+    }
+
+    @Override
+    public void wtf(MessageSupplier supplier) {
+        if (shouldLog(Log.ASSERT)) {
+            log(Log.ASSERT, supplier.get(), NO_ARGS);
+        }
     }
 
     /**
@@ -155,25 +297,21 @@ final class LoggerPrinter implements Printer {
      */
     @Override
     public void json(String json) {
+        if (!shouldLog(Log.DEBUG)) {
+            return;
+        }
         if (TextUtils.isEmpty(json)) {
             d("Empty/Null json content");
             return;
         }
-        try {
-            if (json.startsWith("{")) {
-                JSONObject jsonObject = new JSONObject(json);
-                String message = jsonObject.toString(JSON_INDENT);
-                d(message);
-                return;
-            }
-            if (json.startsWith("[")) {
-                JSONArray jsonArray = new JSONArray(json);
-                String message = jsonArray.toString(JSON_INDENT);
-                d(message);
-            }
-        } catch (JSONException e) {
-            e(e.getCause().getMessage() + "\n" + json);
+        JsonIndenter indenter = new JsonIndenter(JSON_INDENT, settings.getJsonMaxArrayItems(),
+                settings.getJsonMaxStringLength(), settings.getMaxFormattedLength());
+        String message = indenter.format(json);
+        if (message == null) {
+            e("Invalid json content\n" + limit(json));
+            return;
         }
+        d(message);
     }
 
     /**
@@ -183,149 +321,137 @@ final class LoggerPrinter implements Printer {
      */
     @Override
     public void xml(String xml) {
+        if (!shouldLog(Log.DEBUG)) {
+            return;
+        }
         if (TextUtils.isEmpty(xml)) {
             d("Empty/Null xml content");
             return;
         }
         try {
-            Source xmlInput = new StreamSource(new StringReader(xml));
-            StreamResult xmlOutput = new StreamResult(new StringWriter());
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            transformer.transform(xmlInput, xmlOutput);
-            d(xmlOutput.getWriter().toString().replaceFirst(">", ">\n"));
-        } catch (TransformerException e) {
-            e(e.getCause().getMessage() + "\n" + xml);
+            d(new XmlIndenter(XML_INDENT, settings.getMaxFormattedLength()).format(xml));
+        } catch (XmlPullParserException | IOException e) {
+            e("Invalid xml content: " + e.getMessage() + "\n" + limit(xml));
         }
     }
 
     /**
-     * This method is synchronized in order to avoid messy of logs' order.
+     * Formats the record into the calling thread's line buffer and publishes it as one unit,
+     * so lines of concurrent calls are never interleaved and no lock is held while formatting.
+     * Callers check {@link Settings#isLoggable(int)} first, so nothing is formatted for filtered logs.
      */
-    private synchronized void log(int logType, String msg, Object... args) {
-        if (settings.getLogLevel() == LogLevel.NONE) {
-            return;
-        }
+    private void log(int logType, String msg, Object... args) {
         String tag = getTag();
         String message = createMessage(msg, args);
         int methodCount = getMethodCount();
+        if (!settings.isCallerInfoEnabled(tag)) {
+            methodCount = 0;
+        }
 
+        List<String> lines = LOCAL_LINES.get();
+        lines.clear();
         if (settings.isJustshowLog()) {
-            logContent(logType, tag, message);
+            logContent(lines, message);
+            publish(logType, tag, message, msg, args, lines);
             return;
         }
 
-        logTopBorder(logType, tag);
-        logHeaderContent(logType, tag, methodCount);
+        logTopBorder(lines);
+        logHeaderContent(lines, methodCount);
 
-        //get bytes of message with system's default charset (which is UTF-8 for Android)
-        byte[] bytes = message.getBytes();
-        int length = bytes.length;
-        if (length <= CHUNK_SIZE) {
-            if (methodCount > 0) {
-                logDivider(logType, tag);
-            }
-            logContent(logType, tag, message);
-            logBottomBorder(logType, tag);
-            return;
-        }
         if (methodCount > 0) {
-            logDivider(logType, tag);
-        }
-        for (int i = 0; i < length; i += CHUNK_SIZE) {
-            int count = Math.min(length - i, CHUNK_SIZE);
-            //create a new String with system's default charset (which is UTF-8 for Android)
-            logContent(logType, tag, new String(bytes, i, count));
+            logDivider(lines);
         }
-        logBottomBorder(logType, tag);
+        logContent(lines, message);
+        logBottomBorder(lines);
+        publish(logType, tag, message, msg, args, lines);
     }
 
-    private void logTopBorder(int logType, String tag) {
-        logChunk(logType, tag, TOP_BORDER);
+    private void publish(int logType, String tag, String message, String msg, Object[] args, List<String> lines) {
+        Thread thread = Thread.currentThread();
+        long time = System.currentTimeMillis();
+        String finalTag = formatTag(tag);
+        BreadcrumbRing breadcrumbs = settings.getBreadcrumbs();
+        if (breadcrumbs != null) {
+            breadcrumbs.add(time, logType, finalTag, message);
+        }
+        LogRecord record = new LogRecord(logType, finalTag, lines.toArray(new String[lines.size()]),
+                time, thread.getId(), thread.getName(), msg, args);
+        lines.clear();
+        while (!RING.offer(record)) {
+            //the ring is full, help the current consumer or give it time to catch up
+            if (!drain()) {
+                Thread.yield();
+            }
+        }
+        drain();
     }
 
-    private void logHeaderContent(int logType, String tag, int methodCount) {
-        StackTraceElement[] trace = Thread.currentThread().getStackTrace();
-        if (settings.isShowThreadInfo()) {
-            logChunk(logType, tag, HORIZONTAL_DOUBLE_LINE + " Thread: " + Thread.currentThread().getName());
-            logDivider(logType, tag);
+    /**
+     * Prints the published records if no other thread is doing it already.
+     * The thread that holds the drain flag is the single consumer of the ring.
+     *
+     * @return true if this thread acted as consumer
+     */
+    private boolean drain() {
+        boolean drained = false;
+        while (DRAINING.compareAndSet(false, true)) {
+            drained = true;
+            try {
+                LogRecord record;
+                while ((record = RING.poll()) != null) {
+                    //formatted once, shared by every sink
+                    for (SinkChannel sink : settings.getSinks()) {
+                        sink.write(record);
+                    }
+                }
+            } finally {
+                DRAINING.set(false);
+            }
+            //a record published while the flag was released is printed by its own producer,
+            //but one published just before the release has to be picked up here
+            if (RING.isEmpty()) {
+                break;
+            }
         }
-        String level = "";
+        return drained;
+    }
 
-        int stackOffset = getStackOffset(trace) + settings.getMethodOffset();
+    private void logTopBorder(List<String> lines) {
+        lines.add(TOP_BORDER);
+    }
 
-        //corresponding method count with the current stack may exceeds the stack trace. Trims the count
-        if (methodCount + stackOffset > trace.length) {
-            methodCount = trace.length - stackOffset - 1;
+    private void logHeaderContent(List<String> lines, int methodCount) {
+        if (settings.isShowThreadInfo()) {
+            lines.add(HORIZONTAL_DOUBLE_LINE + " Thread: " + Thread.currentThread().getName());
+            logDivider(lines);
         }
-
-        for (int i = methodCount; i > 0; i--) {
-            int stackIndex = i + stackOffset;
-            if (stackIndex >= trace.length) {
-                continue;
-            }
-            StringBuilder builder = new StringBuilder();
-            builder.append("║ ")
-                    .append(level)
-                    .append(getSimpleClassName(trace[stackIndex].getClassName()))
-                    .append(".")
-                    .append(trace[stackIndex].getMethodName())
-                    .append(" ")
-                    .append(" (")
-                    .append(trace[stackIndex].getFileName())
-                    .append(":")
-                    .append(trace[stackIndex].getLineNumber())
-                    .append(")");
-            level += "   ";
-            logChunk(logType, tag, builder.toString());
+        if (methodCount > 0) {
+            CallerLocator.addCallerFrames(lines, methodCount, settings.getMethodOffset());
         }
     }
 
-    private void logBottomBorder(int logType, String tag) {
-        logChunk(logType, tag, BOTTOM_BORDER);
+    private void logBottomBorder(List<String> lines) {
+        lines.add(BOTTOM_BORDER);
     }
 
-    private void logDivider(int logType, String tag) {
-        logChunk(logType, tag, MIDDLE_BORDER);
+    private void logDivider(List<String> lines) {
+        lines.add(MIDDLE_BORDER);
     }
 
-    private void logContent(int logType, String tag, String chunk) {
-        String[] lines = chunk.split(System.getProperty("line.separator"));
-        for (String line : lines) {
-            logChunk(logType, tag, HORIZONTAL_DOUBLE_LINE + " " + line);
-        }
+    private void logContent(List<String> lines, String message) {
+        LogChunker.split(message, CHUNK_SIZE, CONTENT_PREFIX, lines);
     }
 
-    private void logChunk(int logType, String tag, String chunk) {
-        String finalTag = formatTag(tag);
-        switch (logType) {
-            case Log.ERROR:
-                Log.e(finalTag, chunk);
-                break;
-            case Log.INFO:
-                Log.i(finalTag, chunk);
-                break;
-            case Log.VERBOSE:
-                Log.v(finalTag, chunk);
-                break;
-            case Log.WARN:
-                Log.w(finalTag, chunk);
-                break;
-            case Log.ASSERT:
-                Log.wtf(finalTag, chunk);
-                break;
-            case Log.DEBUG:
-                // Fall through, log debug by default
-            default:
-                Log.d(finalTag, chunk);
-                break;
+    /**
+     * Cuts text printed as is to the formatted output limit
+     */
+    private String limit(String text) {
+        int maxLength = settings.getMaxFormattedLength();
+        if (maxLength <= 0 || text.length() <= maxLength) {
+            return text;
         }
-    }
-
-    private String getSimpleClassName(String name) {
-        int lastIndex = name.lastIndexOf(".");
-        return name.substring(lastIndex + 1);
+        return text.substring(0, maxLength) + "\n... truncated, " + text.length() + " characters in total";
     }
 
     private String formatTag(String tag) {
@@ -363,22 +489,4 @@ final class LoggerPrinter implements Printer {
         }
         return result;
     }
-
-    /**
-     * Determines the starting index of the stack trace, after method calls made by this class.
-     *
-     * @param trace the stack trace
-     * @return the stack offset
-     */
-    private int getStackOffset(StackTraceElement[] trace) {
-        for (int i = MIN_STACK_OFFSET; i < trace.length; i++) {
-            StackTraceElement e = trace[i];
-            String name = e.getClassName();
-            if (!name.equals(LoggerPrinter.class.getName()) && !name.equals(Logger.class.getName())) {
-                return --i;
-            }
-        }
-        return -1;
-    }
-
 }
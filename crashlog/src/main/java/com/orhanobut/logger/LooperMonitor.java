@@ -0,0 +1,140 @@
+package com.orhanobut.logger;
+
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times every message the main looper dispatches, using the lines the looper prints around
+ * each dispatch.
+ * <p>
+ * Durations go into a fixed histogram of power-of-two microsecond buckets, bucket i counts
+ * dispatches shorter than 2^i microseconds. Recording is one array increment, nothing is
+ * allocated and nothing is locked, the counts can be read from any thread. Only a dispatch
+ * slower than the threshold is logged through {@link Logger}, with the handler and callback
+ * taken from the looper's line.
+ */
+public final class LooperMonitor implements android.util.Printer {
+
+    public static final String TAG = "LOOPER";
+
+    /**
+     * The last bucket counts everything of 2^(BUCKET_COUNT - 2) microseconds (about 16s) and up
+     */
+    public static final int BUCKET_COUNT = 26;
+
+    private static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+
+    private final long slowThresholdNanos;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Written by the looper thread only
+     */
+    private long dispatchStart;
+    private String dispatchTarget;
+
+    /**
+     * @param slowThresholdMillis dispatches at least this slow are logged, 0 logs none
+     */
+    LooperMonitor(long slowThresholdMillis) {
+        this.slowThresholdNanos = slowThresholdMillis * 1000000;
+    }
+
+    /**
+     * Starts timing the main looper, replaces any message logging it had
+     */
+    void install() {
+        Looper.getMainLooper().setMessageLogging(this);
+    }
+
+    void uninstall() {
+        Looper.getMainLooper().setMessageLogging(null);
+    }
+
+    @Override
+    public void println(String x) {
+        long now = System.nanoTime();
+        if (x.charAt(0) == '>') {
+            dispatchStart = now;
+            dispatchTarget = x;
+            return;
+        }
+        if (dispatchTarget == null) {
+            //installed in the middle of a dispatch
+            return;
+        }
+        long elapsed = now - dispatchStart;
+        buckets.incrementAndGet(bucketOf(elapsed / 1000));
+        if (slowThresholdNanos > 0 && elapsed >= slowThresholdNanos) {
+            logSlowDispatch(elapsed / 1000000, dispatchTarget);
+        }
+        dispatchTarget = null;
+    }
+
+    private static int bucketOf(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    private static void logSlowDispatch(long millis, String line) {
+        String target = line.startsWith(DISPATCH_PREFIX) ? line.substring(DISPATCH_PREFIX.length()) : line;
+        Logger.t(TAG, 0).w("slow dispatch %dms %s", millis, target);
+    }
+
+    /**
+     * @return the number of dispatches timed so far
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return number of dispatches shorter than 2^bucket microseconds and at least half of that
+     */
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound in microseconds of the bucket holding the percentile, 0 if
+     * nothing was timed yet and -1 if it falls into the last, unbounded bucket
+     */
+    public long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets every bucket back to 0, dispatches recorded meanwhile may be lost
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.orhanobut.logger;
+
+/**
+ * Stands in for the exception of an uncaught crash when the main thread stalls, carries the
+ * main thread's stack at the time the stall was detected
+ */
+final class MainThreadStallException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    MainThreadStallException(long stalledMillis, StackTraceElement[] mainStack) {
+        super("main thread stalled for " + stalledMillis + "ms");
+        setStackTrace(mainStack);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        //the stack of the watchdog is of no interest
+        return this;
+    }
+}
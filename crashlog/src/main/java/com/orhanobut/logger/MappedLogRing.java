@@ -0,0 +1,199 @@
+package com.orhanobut.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+
+/**
+ * Fixed-size log ring backed by a memory-mapped file.
+ * <p>
+ * Every printed line is stored into the mapping with plain memory writes, the kernel keeps
+ * the dirty pages even if the process is killed, so the tail of the log survives
+ * {@code killProcess}, the low memory killer and SIGKILL. When the ring is opened again the
+ * previous content is read back once and is available through {@link #getRecoveredLog()} and
+ * {@link CrashUtils#getRecoveredLog()}.
+ * <p>
+ * Lines are appended by the thread currently printing records, which is never more than one
+ * at a time, so the ring itself needs no locking.
+ */
+public final class MappedLogRing implements LogSink {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x4c4f4752; //"LOGR"
+    private static final int HEADER_SIZE = 16;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_POSITION = 8;
+
+    /**
+     * Default ring size, the last 256 KB of log lines
+     */
+    public static final int DEFAULT_SIZE = 256 * 1024;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final String recovered;
+
+    /**
+     * Total number of bytes written, the next byte goes to {@code position % capacity}
+     */
+    private long position;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final Calendar calendar = Calendar.getInstance();
+
+    public MappedLogRing(File file) throws IOException {
+        this(file, DEFAULT_SIZE);
+    }
+
+    /**
+     * Maps the ring file, creating it if needed, and recovers what the previous run left in it
+     *
+     * @param file the ring file, should live in private storage
+     * @param size size of the file in bytes, including a small header
+     */
+    public MappedLogRing(File file, int size) throws IOException {
+        if (size <= HEADER_SIZE + 1024) {
+            throw new IllegalArgumentException("size is too small: " + size);
+        }
+        this.file = file;
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            //the mapping stays valid after the file is closed
+            raf.close();
+        }
+        capacity = size - HEADER_SIZE;
+
+        if (buffer.getInt(OFFSET_MAGIC) == MAGIC && buffer.getInt(OFFSET_CAPACITY) == capacity) {
+            recovered = read(buffer.getLong(OFFSET_POSITION));
+        } else {
+            recovered = null;
+        }
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        buffer.putInt(OFFSET_CAPACITY, capacity);
+        buffer.putLong(OFFSET_POSITION, 0);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the log lines the previous run left in the ring, or null if there were none
+     */
+    public String getRecoveredLog() {
+        return recovered;
+    }
+
+    /**
+     * @return the lines currently held by the ring, oldest first
+     */
+    public String snapshot() {
+        return read(buffer.getLong(OFFSET_POSITION));
+    }
+
+    /**
+     * Copies the lines currently held by the ring into a crash report without decoding them
+     */
+    void copyTo(CrashWriter writer) throws IOException {
+        long end = buffer.getLong(OFFSET_POSITION);
+        int length = (int) Math.min(end, capacity);
+        int start = (int) ((end - length) % capacity);
+        int i = 0;
+        if (end > capacity) {
+            while (i < length && buffer.get(HEADER_SIZE + (start + i) % capacity) != '\n') {
+                i++;
+            }
+            i++;
+        }
+        for (; i < length; i++) {
+            writer.put(buffer.get(HEADER_SIZE + (start + i) % capacity));
+        }
+    }
+
+    /**
+     * Stores the record's lines, must only be called by one thread at a time
+     */
+    @Override
+    public void write(LogRecord record) {
+        for (String chunk : record.lines) {
+            append(record.time, record.logType, record.tag, chunk);
+        }
+    }
+
+    /**
+     * The mapped pages already belong to the kernel, nothing is buffered
+     */
+    @Override
+    public boolean awaitFlush(long timeoutMillis) {
+        return true;
+    }
+
+    private void append(long time, int logType, String tag, String chunk) {
+        line.setLength(0);
+        FileAppender.formatLine(line, calendar, time, logType, tag, chunk);
+        long pos = position;
+        for (int i = 0, length = line.length(); i < length; i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                pos = put(pos, c);
+            } else if (c < 0x800) {
+                pos = put(pos, 0xc0 | (c >> 6));
+                pos = put(pos, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(line.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                pos = put(pos, 0xf0 | (codePoint >> 18));
+                pos = put(pos, 0x80 | ((codePoint >> 12) & 0x3f));
+                pos = put(pos, 0x80 | ((codePoint >> 6) & 0x3f));
+                pos = put(pos, 0x80 | (codePoint & 0x3f));
+            } else {
+                pos = put(pos, 0xe0 | (c >> 12));
+                pos = put(pos, 0x80 | ((c >> 6) & 0x3f));
+                pos = put(pos, 0x80 | (c & 0x3f));
+            }
+        }
+        position = pos;
+        //publish the new end only after the line is complete
+        buffer.putLong(OFFSET_POSITION, pos);
+    }
+
+    private long put(long pos, int b) {
+        buffer.put(HEADER_SIZE + (int) (pos % capacity), (byte) b);
+        return pos + 1;
+    }
+
+    private String read(long end) {
+        if (end <= 0) {
+            return null;
+        }
+        int length = (int) Math.min(end, capacity);
+        byte[] bytes = new byte[length];
+        int start = (int) ((end - length) % capacity);
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(HEADER_SIZE + (start + i) % capacity);
+        }
+        int from = 0;
+        if (end > capacity) {
+            //the oldest line was partly overwritten, start at the next complete one
+            while (from < length && bytes[from] != '\n') {
+                from++;
+            }
+            from++;
+        }
+        return from >= length ? null : new String(bytes, from, length - from, UTF_8);
+    }
+}
@@ -0,0 +1,9 @@
+package com.orhanobut.logger;
+
+/**
+ * Builds a log message on demand, it is only called if the message will be printed
+ */
+public interface MessageSupplier {
+
+    String get();
+}
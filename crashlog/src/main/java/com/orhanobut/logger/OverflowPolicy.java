@@ -0,0 +1,17 @@
+package com.orhanobut.logger;
+
+/**
+ * What a queued {@link LogSink} does with a record when its queue is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The record is dropped and counted, logging never waits for the sink
+     */
+    DROP,
+
+    /**
+     * Logging waits until the sink took a record from its queue
+     */
+    BLOCK
+}
@@ -11,20 +11,57 @@ public interface Printer {
 
     Settings getSettings();
 
+    /**
+     * @param priority one of the {@link android.util.Log} priorities
+     * @return true if logs with this priority are printed at the current log level
+     */
+    boolean isLoggable(int priority);
+
+    /**
+     * Records the message for the next crash report without printing it
+     */
+    void breadcrumb(String message);
+
+    void d(String message);
+
     void d(String message, Object... args);
 
+    void d(MessageSupplier supplier);
+
+    void e(String message);
+
     void e(String message, Object... args);
 
+    void e(MessageSupplier supplier);
+
     void e(Throwable throwable, String message, Object... args);
 
+    void e(Throwable throwable, MessageSupplier supplier);
+
+    void w(String message);
+
     void w(String message, Object... args);
 
+    void w(MessageSupplier supplier);
+
+    void i(String message);
+
     void i(String message, Object... args);
 
+    void i(MessageSupplier supplier);
+
+    void v(String message);
+
     void v(String message, Object... args);
 
+    void v(MessageSupplier supplier);
+
+    void wtf(String message);
+
     void wtf(String message, Object... args);
 
+    void wtf(MessageSupplier supplier);
+
     void json(String json);
 
     void xml(String xml);
@@ -0,0 +1,84 @@
+package com.orhanobut.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer ring of {@link LogRecord}s.
+ * <p>
+ * Producers claim a slot with a CAS on the tail and publish it by advancing the slot's
+ * sequence, so records keep the order in which they were claimed. {@link #poll()} may only
+ * be called by one thread at a time.
+ */
+final class RecordRing {
+
+    private final int mask;
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    RecordRing(int capacity) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, record);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest published record, or null if there is none yet
+     */
+    LogRecord poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        LogRecord record = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return record;
+    }
+
+    /**
+     * @return true if no published record is waiting at the head
+     */
+    boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) (position & mask)) != position + 1;
+    }
+}
@@ -0,0 +1,312 @@
+package com.orhanobut.logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only list of every report written, in the app's crashlog directory.
+ * <p>
+ * Each report adds one length-prefixed record: time, type, fingerprint, size, version, file
+ * name and exception class. Listing reports is a single buffered read of this file, no report
+ * and no version directory is opened. A record cut short by a crash is dropped the next time
+ * the catalog is {@link #compact(Set) compacted}, which also removes reports deleted by the
+ * retention policy.
+ * <p>
+ * Appends, rebuilds and compactions are serialized, queries take no lock and read the catalog
+ * up to its length when they start, so a slow query never holds up a crash being recorded.
+ */
+final class ReportCatalog {
+
+    static final String FILE_NAME = "report-catalog.dat";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x43524341; //"CRCA"
+    private static final int FIXED_SIZE = 8 + 1 + 8 + 8;
+    //the fixed fields and three string lengths
+    private static final int MIN_RECORD_SIZE = FIXED_SIZE + 6;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final File root;
+    private final File file;
+    private final Object lock = new Object();
+
+    /**
+     * @param root the app's crashlog directory, holding one directory per version
+     */
+    ReportCatalog(File root) {
+        this.root = root;
+        this.file = new File(root, FILE_NAME);
+    }
+
+    boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Adds a newly written report, a single small append
+     *
+     * @param exceptionClass null for logs
+     */
+    void append(File report, long time, CrashReport.Type type, String exceptionClass,
+                long fingerprint) throws IOException {
+        File dir = report.getParentFile();
+        if (dir == null) {
+            return;
+        }
+        byte[] record = encode(time, type, fingerprint, report.length(), dir.getName(), report.getName(),
+                exceptionClass);
+        synchronized (lock) {
+            boolean created = !file.exists();
+            if (created && !root.exists()) {
+                root.mkdirs();
+            }
+            OutputStream out = new FileOutputStream(file, true);
+            try {
+                if (created) {
+                    out.write(ByteBuffer.allocate(4).putInt(MAGIC).array());
+                }
+                out.write(record);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a new catalog from the retention manifest, for reports written before the catalog
+     * existed. Exception class and fingerprint of those are unknown.
+     */
+    void rebuild(Collection<RetentionManager.Entry> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries.size() * 64 + 4);
+        new DataOutputStream(out).writeInt(MAGIC);
+        for (RetentionManager.Entry entry : entries) {
+            out.write(encode(entry.time, typeOf(entry.name), 0, entry.size, entry.version, entry.name, null));
+        }
+        synchronized (lock) {
+            replace(out);
+        }
+    }
+
+    /**
+     * Rewrites the catalog without the reports that are no longer in the manifest and without a
+     * record cut short, only if there is any
+     *
+     * @param liveKeys {@link RetentionManager.Entry#getKey() keys} of the reports kept
+     * @return number of records removed
+     */
+    int compact(Set<String> liveKeys) throws IOException {
+        synchronized (lock) {
+            return compactLocked(liveKeys);
+        }
+    }
+
+    private int compactLocked(Set<String> liveKeys) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(file.length(), Integer.MAX_VALUE));
+        new DataOutputStream(out).writeInt(MAGIC);
+        int removed = 0;
+        long consumed = 4;
+        DataInputStream in = open();
+        try {
+            byte[] record = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length < MIN_RECORD_SIZE || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[length];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+                buffer.position(FIXED_SIZE);
+                String version = readString(buffer);
+                String name = readString(buffer);
+                if (version == null || name == null || readString(buffer) == null) {
+                    break;
+                }
+                consumed += 4 + length;
+                if (liveKeys.contains(RetentionManager.Entry.keyOf(version, name))) {
+                    new DataOutputStream(out).writeInt(length);
+                    out.write(record, 0, length);
+                } else {
+                    removed++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        //anything after the last complete record is a torn append
+        if (removed > 0 || consumed != file.length()) {
+            replace(out);
+        }
+        return removed;
+    }
+
+    /**
+     * Reads the whole catalog once, newest reports first. Records appended while it reads are
+     * not part of the result.
+     */
+    List<CrashReport> query(ReportQuery query) throws IOException {
+        long end = file.length();
+        if (end == 0) {
+            return new ArrayList<>(0);
+        }
+        int window = (int) Math.min((long) query.getOffset() + query.getLimit(), Integer.MAX_VALUE);
+        ArrayDeque<CrashReport> newest = new ArrayDeque<>(Math.min(window, 1024));
+        DataInputStream in = open();
+        try {
+            byte[] record = new byte[256];
+            long consumed = 4;
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length < MIN_RECORD_SIZE || length > MAX_RECORD_SIZE || consumed + 4 + length > end) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[length];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                consumed += 4 + length;
+                ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+                long time = buffer.getLong();
+                CrashReport.Type type = buffer.get() == 0 ? CrashReport.Type.CRASH : CrashReport.Type.LOG;
+                long fingerprint = buffer.getLong();
+                long size = buffer.getLong();
+                //cheap checks first, strings are only decoded for candidates
+                if (!query.matches(time, type)) {
+                    continue;
+                }
+                String version = readString(buffer);
+                if (version == null) {
+                    break;
+                }
+                if (!query.matchesVersion(version)) {
+                    continue;
+                }
+                String name = readString(buffer);
+                String exceptionClass = readString(buffer);
+                if (name == null || exceptionClass == null) {
+                    break;
+                }
+                newest.addLast(new CrashReport(new File(root, version), name, time, type, version,
+                        exceptionClass.length() == 0 ? null : exceptionClass, fingerprint, size));
+                if (newest.size() > window) {
+                    newest.removeFirst();
+                }
+            }
+        } finally {
+            in.close();
+        }
+        List<CrashReport> page = new ArrayList<>(Math.max(0, newest.size() - query.getOffset()));
+        int skip = query.getOffset();
+        while (!newest.isEmpty()) {
+            CrashReport report = newest.removeLast();
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(report);
+            }
+        }
+        return page;
+    }
+
+    static CrashReport.Type typeOf(String name) {
+        return name.startsWith("crashlog") ? CrashReport.Type.LOG : CrashReport.Type.CRASH;
+    }
+
+    private DataInputStream open() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a report catalog");
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private void replace(ByteArrayOutputStream content) throws IOException {
+        if (!root.exists()) {
+            root.mkdirs();
+        }
+        File temp = new File(root, "." + FILE_NAME + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            content.writeTo(out);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("can not rename " + temp + " to " + file);
+        }
+    }
+
+    private static byte[] encode(long time, CrashReport.Type type, long fingerprint, long size, String version,
+                                 String name, String exceptionClass) {
+        byte[] versionBytes = version.getBytes(UTF_8);
+        byte[] nameBytes = name.getBytes(UTF_8);
+        byte[] exceptionBytes = exceptionClass == null ? new byte[0] : exceptionClass.getBytes(UTF_8);
+        int length = FIXED_SIZE + 6 + versionBytes.length + nameBytes.length + exceptionBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putLong(time);
+        buffer.put((byte) (type == CrashReport.Type.CRASH ? 0 : 1));
+        buffer.putLong(fingerprint);
+        buffer.putLong(size);
+        putString(buffer, versionBytes);
+        putString(buffer, nameBytes);
+        putString(buffer, exceptionBytes);
+        return buffer.array();
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * @return null if the string runs past the end of the record, the record is torn
+     */
+    private static String readString(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) {
+            return null;
+        }
+        int length = buffer.getShort() & 0xffff;
+        if (length > buffer.remaining()) {
+            return null;
+        }
+        String text = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+}
@@ -0,0 +1,86 @@
+package com.orhanobut.logger;
+
+/**
+ * Filter and page of {@link CrashUtils#queryReports}, matches every report by default. Reports
+ * are returned newest first.
+ */
+public final class ReportQuery {
+
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private String version;
+    private CrashReport.Type type;
+    private int offset;
+    private int limit = 50;
+
+    /**
+     * @param from first millisecond included
+     * @param to   first millisecond no longer included
+     */
+    public ReportQuery setTimeRange(long from, long to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * @param version the version directory, "versionCode_versionName"; null matches all versions
+     */
+    public ReportQuery setVersion(String version) {
+        this.version = version;
+        return this;
+    }
+
+    /**
+     * @param type null matches all types
+     */
+    public ReportQuery setType(CrashReport.Type type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * @param offset number of matching reports to skip, newest first
+     * @param limit  largest number of reports returned
+     */
+    public ReportQuery setPage(int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("offset may not be negative and limit must be positive");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    boolean matches(long time, CrashReport.Type type) {
+        return time >= from && time < to && (this.type == null || this.type == type);
+    }
+
+    boolean matchesVersion(String version) {
+        return this.version == null || this.version.equals(version);
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public CrashReport.Type getType() {
+        return type;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,335 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the reports listed in the {@link RetentionManager} manifest to an http endpoint.
+ * <p>
+ * Several reports go into one POST, gzip compressed while they are streamed from disk. Each
+ * report is a line "version/name\tsize\n" followed by exactly size bytes of the file, the name
+ * ends with ".gz" when the report itself is compressed. Progress, the
+ * failure backoff and the bytes sent today are kept in a small state file, so nothing is sent
+ * twice and a restart does not reset the backoff or the daily budget. Uploads run on a thread
+ * of their own, the crash path never waits for them.
+ */
+final class ReportUploader {
+
+    static final String STATE_NAME = "upload.state";
+
+    private static final String TAG = "ReportUploader";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x55504c32; //"UPL2"
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final int TIMEOUT = 30 * 1000;
+
+    private final RetentionManager retention;
+    private final File stateFile;
+    private final URL endpoint;
+    private final UploadPolicy policy;
+    private final byte[] buffer = new byte[8 * 1024];
+
+    private ScheduledExecutorService executor;
+
+    private boolean stateLoaded;
+    //sequence of the last report sent in the manifest
+    private long sentSequence = -1;
+    private int failures;
+    private long nextAttempt;
+    private long budgetDay;
+    private long budgetBytes;
+    //what the last request actually streamed, reports may vanish between listing and sending
+    private int streamedReports;
+    private long streamedBytes;
+
+    ReportUploader(RetentionManager retention, File stateFile, URL endpoint, UploadPolicy policy) {
+        this.retention = retention;
+        this.stateFile = stateFile;
+        this.endpoint = endpoint;
+        this.policy = policy;
+    }
+
+    /**
+     * Looks for new reports right away and then every {@link UploadPolicy#getInterval()}
+     */
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "crashlog-upload");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                upload(System.currentTimeMillis());
+            }
+        }, 0, policy.getInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Sends pending reports batch by batch until none is left, a request fails or the daily
+     * budget is used up. A batch rejected with a 4xx is sent again report by report and only the
+     * rejected reports are left out, 5xx answers and io errors are retried after the backoff.
+     *
+     * @return number of reports sent
+     */
+    synchronized int upload(long now) {
+        if (!stateLoaded) {
+            loadState();
+            stateLoaded = true;
+        }
+        if (now < nextAttempt) {
+            return 0;
+        }
+        if (now / DAY != budgetDay) {
+            budgetDay = now / DAY;
+            budgetBytes = 0;
+        }
+        int sent = 0;
+        //last report of a rejected batch, reports up to it are sent one by one to find the bad one
+        RetentionManager.Entry splitUntil = null;
+        while (true) {
+            List<RetentionManager.Entry> pending = retention.listAfter(sentSequence,
+                    splitUntil == null ? policy.getMaxReportsPerBatch() : 1);
+            if (pending.isEmpty()) {
+                break;
+            }
+            long daily = policy.getDailyBytes();
+            RetentionManager.Entry first = pending.get(0);
+            if (daily > 0 && first.size > daily) {
+                //would never fit into a day, leave it out instead of blocking all later reports
+                Log.w(TAG, "skipping " + first.getKey() + ", it is larger than the daily budget");
+                advance(first, 0);
+                continue;
+            }
+            int count = 0;
+            long bytes = 0;
+            for (RetentionManager.Entry entry : pending) {
+                if (count > 0 && bytes + entry.size > policy.getMaxBatchBytes()) {
+                    break;
+                }
+                if (daily > 0 && budgetBytes + bytes + entry.size > daily) {
+                    break;
+                }
+                bytes += entry.size;
+                count++;
+            }
+            if (count == 0) {
+                //the rest has to wait for tomorrow
+                break;
+            }
+            List<RetentionManager.Entry> batch = pending.subList(0, count);
+            try {
+                send(batch);
+            } catch (RejectedException e) {
+                failures = 0;
+                nextAttempt = 0;
+                if (count > 1) {
+                    splitUntil = batch.get(count - 1);
+                    continue;
+                }
+                //retrying would be rejected again
+                Log.w(TAG, "skipping " + first.getKey() + ", " + e.getMessage());
+                advance(first, streamedBytes);
+                splitUntil = passed(first, splitUntil);
+                continue;
+            } catch (IOException e) {
+                failures++;
+                long backoff = policy.getInitialBackoff() << Math.min(failures - 1, 30);
+                nextAttempt = now + Math.min(backoff < 0 ? Long.MAX_VALUE : backoff, policy.getMaxBackoff());
+                saveState();
+                Log.w(TAG, "upload failed " + failures + " times, next attempt in " + (nextAttempt - now) + "ms", e);
+                return sent;
+            }
+            failures = 0;
+            nextAttempt = 0;
+            advance(batch.get(count - 1), streamedBytes);
+            splitUntil = passed(batch.get(count - 1), splitUntil);
+            sent += streamedReports;
+        }
+        return sent;
+    }
+
+    private static RetentionManager.Entry passed(RetentionManager.Entry last, RetentionManager.Entry splitUntil) {
+        return splitUntil == null || last.sequence >= splitUntil.sequence ? null : splitUntil;
+    }
+
+    private void advance(RetentionManager.Entry last, long bytes) {
+        sentSequence = last.sequence;
+        budgetBytes += bytes;
+        saveState();
+    }
+
+    private void send(List<RetentionManager.Entry> batch) throws IOException {
+        streamedReports = 0;
+        streamedBytes = 0;
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            OutputStream out = new GZIPOutputStream(connection.getOutputStream(), buffer.length);
+            try {
+                for (RetentionManager.Entry entry : batch) {
+                    long size = writeReport(out, entry);
+                    if (size >= 0) {
+                        streamedReports++;
+                        streamedBytes += size;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            int code = connection.getResponseCode();
+            if (code / 100 == 4 && code != 408 && code != 429) {
+                throw new RejectedException("upload rejected with http " + code);
+            }
+            if (code / 100 != 2) {
+                throw new IOException("upload failed with http " + code);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Copies the file in small pieces, it is never read into memory as a whole
+     *
+     * @return bytes of the file sent, -1 if the report no longer exists
+     */
+    private long writeReport(OutputStream out, RetentionManager.Entry entry) throws IOException {
+        File file = retention.getFile(entry);
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            //compressed meanwhile, or deleted by the retention policy
+            file = compressedSibling(file);
+            try {
+                in = new FileInputStream(file);
+            } catch (FileNotFoundException deleted) {
+                Log.w(TAG, "skipping " + entry.getKey() + ", it has been deleted");
+                return -1;
+            }
+        }
+        try {
+            long size = file.length();
+            //the real file name, a ".gz" name tells the server the bytes are gzip compressed
+            out.write((entry.version + "/" + file.getName() + "\t" + size + "\n").getBytes(UTF_8));
+            long left = size;
+            while (left > 0) {
+                int count = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (count < 0) {
+                    throw new IOException(file + " is shorter than " + size + " bytes");
+                }
+                out.write(buffer, 0, count);
+                left -= count;
+            }
+            return size;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File compressedSibling(File file) {
+        String name = file.getName();
+        if (name.endsWith(LogCompressor.SUFFIX)) {
+            return new File(file.getParentFile(), name.substring(0, name.length() - LogCompressor.SUFFIX.length()));
+        }
+        return new File(file.getParentFile(), name + LogCompressor.SUFFIX);
+    }
+
+    private void loadState() {
+        if (!stateFile.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(stateFile));
+            try {
+                if (in.readInt() != MAGIC) {
+                    return;
+                }
+                sentSequence = in.readLong();
+                failures = in.readInt();
+                nextAttempt = in.readLong();
+                budgetDay = in.readLong();
+                budgetBytes = in.readLong();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while reading " + stateFile, e);
+        }
+    }
+
+    private void saveState() {
+        File temp = new File(stateFile.getParentFile(), "." + STATE_NAME + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                out.writeInt(MAGIC);
+                out.writeLong(sentSequence);
+                out.writeInt(failures);
+                out.writeLong(nextAttempt);
+                out.writeLong(budgetDay);
+                out.writeLong(budgetBytes);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(stateFile)) {
+                throw new IOException("can not rename " + temp + " to " + stateFile);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while writing " + stateFile, e);
+        }
+    }
+
+    /**
+     * A 4xx answer other than 408 and 429, the same request would never be accepted
+     */
+    private static final class RejectedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the crashlog directory within a {@link RetentionPolicy}.
+ * <p>
+ * Every report written is appended to a small manifest in the app's crashlog directory, so
+ * trimming only reads that manifest instead of listing every version directory. The directory
+ * is scanned once when no manifest exists yet. Trimming runs on a background thread and only
+ * rewrites the manifest when something was deleted.
+ */
+final class RetentionManager {
+
+    private static final String TAG = "RetentionManager";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String MANIFEST_NAME = "retention.manifest";
+
+    /**
+     * Names given by {@link CrashWriter#newReportFile}, optionally compressed
+     */
+    private static final Pattern REPORT_NAME =
+            Pattern.compile("crash(log)?-\\d{4}(-\\d{2}){5}-\\d+(-\\d+)?\\.txt(\\.gz)?");
+
+    private final File root;
+    private final File manifest;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "crashlog-retention");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private volatile RetentionPolicy policy;
+
+    /**
+     * Manifest entries ordered by time, null until the manifest has been loaded
+     */
+    private List<Entry> entries;
+    private long totalBytes;
+    private long nextSequence;
+    private final Map<String, Long> versionBytes = new HashMap<>();
+
+    /**
+     * @param root the app's crashlog directory, holding one directory per version
+     */
+    RetentionManager(File root, RetentionPolicy policy) {
+        this.root = root;
+        this.manifest = new File(root, MANIFEST_NAME);
+        this.policy = policy;
+    }
+
+    void setPolicy(RetentionPolicy policy) {
+        this.policy = policy;
+        trimAsync();
+    }
+
+    /**
+     * Adds a newly written report to the manifest, a single small append
+     */
+    synchronized void record(File file) {
+        File dir = file.getParentFile();
+        if (dir == null) {
+            return;
+        }
+        //unknown until the manifest is loaded, then it follows the last line
+        long sequence = entries == null ? -1 : nextSequence;
+        Entry entry = new Entry(sequence, file.lastModified(), file.length(), dir.getName(), file.getName());
+        try {
+            OutputStream out = new FileOutputStream(manifest, true);
+            try {
+                out.write(entry.toLine().getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while updating " + manifest, e);
+        }
+        if (entries != null) {
+            add(entry);
+            if (isOverLimit()) {
+                trimAsync();
+            }
+        }
+    }
+
+    /**
+     * Compresses every sealed plain text report, the manifest is updated once at the end
+     */
+    void compressSealed(int level) {
+        List<Entry> candidates = new ArrayList<>();
+        synchronized (this) {
+            if (entries == null) {
+                load();
+            }
+            for (Entry entry : entries) {
+                if (!entry.evicted && !entry.name.endsWith(LogCompressor.SUFFIX)) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Map<Entry, File> compressed = new IdentityHashMap<>();
+        for (Entry entry : candidates) {
+            File file = new File(new File(root, entry.version), entry.name);
+            if (!file.exists()) {
+                continue;
+            }
+            try {
+                compressed.put(entry, LogCompressor.compress(file, level));
+            } catch (IOException e) {
+                Log.e(TAG, "an error occured while compressing " + file, e);
+            }
+        }
+        synchronized (this) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                File file = entry.evicted ? null : compressed.remove(entry);
+                if (file != null) {
+                    Entry replacement = new Entry(entry.sequence, entry.time, file.length(), entry.version,
+                            file.getName());
+                    subtract(entry);
+                    entries.set(i, replacement);
+                    totalBytes += replacement.size;
+                    versionBytes.put(entry.version, versionBytes.get(entry.version) + replacement.size);
+                }
+            }
+            //trimmed while it was being compressed, nothing would ever count or delete the copy
+            for (File orphan : compressed.values()) {
+                orphan.delete();
+            }
+            rewrite();
+        }
+    }
+
+    void compressSealedAsync(final int level) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compressSealed(level);
+            }
+        });
+    }
+
+    void trimAsync() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                trim();
+            }
+        });
+    }
+
+    synchronized void trim() {
+        if (entries == null) {
+            load();
+        }
+        RetentionPolicy current = policy;
+        if (current == null) {
+            return;
+        }
+        int removed = 0;
+
+        if (current.getMaxAge() > 0) {
+            long oldest = System.currentTimeMillis() - current.getMaxAge();
+            for (Entry entry : entries) {
+                if (entry.time >= oldest) {
+                    break;
+                }
+                removed += evict(entry);
+            }
+        }
+
+        if (current.getMaxBytesPerVersion() > 0) {
+            for (Entry entry : entries) {
+                Long bytes = versionBytes.get(entry.version);
+                if (bytes != null && bytes > current.getMaxBytesPerVersion()) {
+                    removed += evict(entry);
+                }
+            }
+        }
+
+        int files = entries.size() - removed;
+        for (Entry entry : entries) {
+            boolean tooMany = current.getMaxFiles() > 0 && files > current.getMaxFiles();
+            boolean tooLarge = current.getMaxBytes() > 0 && totalBytes > current.getMaxBytes();
+            if (!tooMany && !tooLarge) {
+                break;
+            }
+            int evicted = evict(entry);
+            removed += evicted;
+            files -= evicted;
+        }
+
+        if (removed > 0) {
+            List<Entry> kept = new ArrayList<>(entries.size() - removed);
+            for (Entry entry : entries) {
+                if (!entry.evicted) {
+                    kept.add(entry);
+                }
+            }
+            entries = kept;
+            rewrite();
+        }
+    }
+
+    /**
+     * Reports recorded after the given one, in the order they were recorded. Unlike the file
+     * time this order never goes backwards when the clock does.
+     *
+     * @param sequence the {@link Entry#sequence} of the given report, -1 to start before all
+     */
+    synchronized List<Entry> listAfter(long sequence, int max) {
+        if (entries == null) {
+            load();
+        }
+        List<Entry> after = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!entry.evicted && entry.sequence > sequence) {
+                after.add(entry);
+            }
+        }
+        Collections.sort(after, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+            }
+        });
+        return after.size() > max ? new ArrayList<>(after.subList(0, max)) : after;
+    }
+
+    /**
+     * @return keys of all reports in the manifest
+     */
+    synchronized Set<String> getKeys() {
+        if (entries == null) {
+            load();
+        }
+        Set<String> keys = new HashSet<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            if (!entry.evicted) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    File getFile(Entry entry) {
+        return new File(new File(root, entry.version), entry.name);
+    }
+
+    private boolean isOverLimit() {
+        RetentionPolicy current = policy;
+        if (current == null || entries.isEmpty()) {
+            return false;
+        }
+        if (current.getMaxFiles() > 0 && entries.size() > current.getMaxFiles()) {
+            return true;
+        }
+        if (current.getMaxBytes() > 0 && totalBytes > current.getMaxBytes()) {
+            return true;
+        }
+        Long bytes = versionBytes.get(entries.get(entries.size() - 1).version);
+        return current.getMaxBytesPerVersion() > 0 && bytes != null && bytes > current.getMaxBytesPerVersion();
+    }
+
+    private int evict(Entry entry) {
+        if (entry.evicted) {
+            return 0;
+        }
+        File file = new File(new File(root, entry.version), entry.name);
+        if (!file.delete() && file.exists()) {
+            Log.w(TAG, "can not delete " + file);
+            return 0;
+        }
+        entry.evicted = true;
+        subtract(entry);
+        return 1;
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        nextSequence = Math.max(nextSequence, entry.sequence + 1);
+        totalBytes += entry.size;
+        Long bytes = versionBytes.get(entry.version);
+        versionBytes.put(entry.version, (bytes == null ? 0 : bytes) + entry.size);
+    }
+
+    private void subtract(Entry entry) {
+        totalBytes -= entry.size;
+        Long bytes = versionBytes.get(entry.version);
+        if (bytes != null) {
+            versionBytes.put(entry.version, bytes - entry.size);
+        }
+    }
+
+    private void load() {
+        entries = new ArrayList<>();
+        totalBytes = 0;
+        nextSequence = 0;
+        versionBytes.clear();
+        if (!manifest.exists()) {
+            scan();
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry = Entry.parse(line, nextSequence);
+                    if (entry != null) {
+                        add(entry);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while reading " + manifest, e);
+        }
+    }
+
+    /**
+     * Builds the manifest from the directory, only needed once
+     */
+    private void scan() {
+        List<Entry> found = new ArrayList<>();
+        File[] versions = root.listFiles();
+        if (versions != null) {
+            for (File version : versions) {
+                File[] files = version.isDirectory() ? version.listFiles() : null;
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    if (isReport(file)) {
+                        found.add(new Entry(-1, file.lastModified(), file.length(), version.getName(),
+                                file.getName()));
+                    }
+                }
+            }
+        }
+        Collections.sort(found, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.time < rhs.time ? -1 : (lhs.time == rhs.time ? 0 : 1);
+            }
+        });
+        for (Entry entry : found) {
+            add(new Entry(nextSequence, entry.time, entry.size, entry.version, entry.name));
+        }
+        rewrite();
+    }
+
+    /**
+     * Only files named like reports count, logs, rings or catalogs someone keeps in a version
+     * directory may still be open and are never trimmed or compressed
+     */
+    static boolean isReport(File file) {
+        return REPORT_NAME.matcher(file.getName()).matches() && file.isFile();
+    }
+
+    private void rewrite() {
+        if (!root.exists()) {
+            root.mkdirs();
+        }
+        File temp = new File(root, "." + MANIFEST_NAME + ".tmp");
+        try {
+            StringBuilder sb = new StringBuilder(entries.size() * 64);
+            for (Entry entry : entries) {
+                sb.append(entry.toLine());
+            }
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(sb.toString().getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(manifest)) {
+                throw new IOException("can not rename " + temp + " to " + manifest);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "an error occured while writing " + manifest, e);
+        }
+    }
+
+    static final class Entry {
+        /**
+         * Position in the order reports were recorded, assigned when the manifest is loaded for
+         * lines appended before that
+         */
+        final long sequence;
+        final long time;
+        final long size;
+        final String version;
+        final String name;
+        boolean evicted;
+
+        Entry(long sequence, long time, long size, String version, String name) {
+            this.sequence = sequence;
+            this.time = time;
+            this.size = size;
+            this.version = version;
+            this.name = name;
+        }
+
+        /**
+         * Names the report independent of whether it has been compressed yet
+         */
+        String getKey() {
+            return keyOf(version, name);
+        }
+
+        static String keyOf(String version, String name) {
+            String base = name.endsWith(LogCompressor.SUFFIX)
+                    ? name.substring(0, name.length() - LogCompressor.SUFFIX.length()) : name;
+            return version + "/" + base;
+        }
+
+        String toLine() {
+            String line = time + "\t" + size + "\t" + version + "\t" + name;
+            return (sequence < 0 ? line : line + "\t" + sequence) + "\n";
+        }
+
+        /**
+         * @param nextSequence used for a line appended before the manifest was loaded
+         */
+        static Entry parse(String line, long nextSequence) {
+            String[] parts = line.split("\t");
+            if (parts.length != 4 && parts.length != 5) {
+                return null;
+            }
+            try {
+                long sequence = parts.length == 5 ? Long.parseLong(parts[4]) : nextSequence;
+                return new Entry(sequence, Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.orhanobut.logger;
+
+/**
+ * Limits for the files kept under the crashlog directory, a limit of 0 means unlimited
+ */
+public final class RetentionPolicy {
+
+    private long maxBytes = 20 * 1024 * 1024;
+    private int maxFiles = 500;
+    private long maxAge = 30L * 24 * 60 * 60 * 1000;
+    private long maxBytesPerVersion = 10 * 1024 * 1024;
+
+    /**
+     * @param maxBytes total size of all reports of all versions
+     */
+    public RetentionPolicy setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @param maxFiles number of reports of all versions
+     */
+    public RetentionPolicy setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+        return this;
+    }
+
+    /**
+     * @param maxAge milliseconds after which a report is deleted
+     */
+    public RetentionPolicy setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * @param maxBytesPerVersion total size of the reports of one app version
+     */
+    public RetentionPolicy setMaxBytesPerVersion(long maxBytesPerVersion) {
+        this.maxBytesPerVersion = maxBytesPerVersion;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public long getMaxBytesPerVersion() {
+        return maxBytesPerVersion;
+    }
+}
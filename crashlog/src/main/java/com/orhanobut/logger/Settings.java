@@ -1,10 +1,20 @@
 package com.orhanobut.logger;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * @author Orhan Obut
  */
 public final class Settings {
 
+    /**
+     * Default number of messages kept for the crash report
+     */
+    public static final int DEFAULT_BREADCRUMB_CAPACITY = 64;
+
     private int methodCount = 2;
     private boolean showThreadInfo = true;
     private int methodOffset = 0;
@@ -15,6 +25,59 @@ public final class Settings {
      */
     private LogLevel logLevel = LogLevel.FULL;
 
+    /**
+     * Lowest printed priority, read once per log call before any formatting
+     */
+    private volatile int minPriority = LogLevel.FULL.getMinPriority();
+
+    /**
+     * Tags whose header shows the calling methods, null shows them for every tag
+     */
+    private volatile Set<String> callerInfoTags;
+
+    /**
+     * Limits of {@link Logger#json(String)} and {@link Logger#xml(String)} output, 0 means unlimited
+     */
+    private int jsonMaxArrayItems;
+    private int jsonMaxStringLength;
+    private int maxFormattedLength;
+
+    /**
+     * Optional file sink, every printed line is also appended to it
+     */
+    private FileAppender fileAppender;
+
+    /**
+     * Optional crash-safe ring, every printed line is also stored into it
+     */
+    private MappedLogRing mappedLogRing;
+
+    /**
+     * Optional compact binary log, every record is also written to it
+     */
+    private BinaryLogWriter binaryLog;
+
+    /**
+     * The last messages for the crash report, null when turned off
+     */
+    private volatile BreadcrumbRing breadcrumbs = new BreadcrumbRing(DEFAULT_BREADCRUMB_CAPACITY);
+
+    /**
+     * Every record is handed to each of these sinks, replaced as a whole when a sink is added
+     * or removed so the printer can read it without locking
+     */
+    private volatile SinkChannel[] sinks = new SinkChannel[0];
+    private final LogcatSink logcat = new LogcatSink();
+
+    /**
+     * Optional timing of the main looper's dispatches
+     */
+    private LooperMonitor looperMonitor;
+
+    public Settings() {
+        addSink(logcat, LogLevel.FULL);
+    }
+
     public Settings hideThreadInfo() {
         showThreadInfo = false;
         return this;
@@ -26,10 +89,250 @@ public final class Settings {
     }
 
     public Settings setLogLevel(LogLevel logLevel) {
+        if (logLevel == null) {
+            throw new NullPointerException("logLevel may not be null");
+        }
         this.logLevel = logLevel;
+        this.minPriority = logLevel.getMinPriority();
+        return this;
+    }
+
+    /**
+     * @param priority one of the {@link android.util.Log} priorities
+     * @return true if logs with this priority are printed at the current log level
+     */
+    public boolean isLoggable(int priority) {
+        return priority >= minPriority;
+    }
+
+    /**
+     * Only logs with one of the given tags capture the calling methods for the header, the
+     * stack capture is skipped for all others. No tags turns it back on for every tag.
+     */
+    public Settings setCallerInfoTags(String... tags) {
+        if (tags == null || tags.length == 0) {
+            callerInfoTags = null;
+        } else {
+            callerInfoTags = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tags)));
+        }
+        return this;
+    }
+
+    /**
+     * @return true if the header of logs with this tag shows the calling methods
+     */
+    public boolean isCallerInfoEnabled(String tag) {
+        Set<String> tags = callerInfoTags;
+        return tags == null || tags.contains(tag);
+    }
+
+    /**
+     * Prints only the first items of long json arrays followed by the number of items left out
+     *
+     * @param maxItems 0 prints every item
+     */
+    public Settings setJsonMaxArrayItems(int maxItems) {
+        this.jsonMaxArrayItems = maxItems;
+        return this;
+    }
+
+    /**
+     * Cuts long json strings followed by their full length
+     *
+     * @param maxLength 0 prints strings in full
+     */
+    public Settings setJsonMaxStringLength(int maxLength) {
+        this.jsonMaxStringLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Caps the characters printed by {@link Logger#json(String)} and {@link Logger#xml(String)}
+     *
+     * @param maxLength 0 prints the whole document
+     */
+    public Settings setMaxFormattedLength(int maxLength) {
+        this.maxFormattedLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Mirrors every printed line into the given file appender, null turns it off
+     */
+    public synchronized Settings setFileAppender(FileAppender fileAppender) {
+        replaceSink(this.fileAppender, fileAppender);
+        this.fileAppender = fileAppender;
+        return this;
+    }
+
+    /**
+     * Keeps the latest printed lines in the given memory-mapped ring, null turns it off
+     */
+    public synchronized Settings setMappedLogRing(MappedLogRing mappedLogRing) {
+        replaceSink(this.mappedLogRing, mappedLogRing);
+        this.mappedLogRing = mappedLogRing;
+        return this;
+    }
+
+    /**
+     * Writes every record to the given binary log, null turns it off
+     */
+    public synchronized Settings setBinaryLog(BinaryLogWriter binaryLog) {
+        replaceSink(this.binaryLog, binaryLog);
+        this.binaryLog = binaryLog;
+        return this;
+    }
+
+    /**
+     * Keeps the last messages and {@link Logger#breadcrumb(String) breadcrumbs} in memory,
+     * they are added to the crash report
+     *
+     * @param capacity number of messages, rounded up to a power of two; 0 turns it off
+     */
+    public Settings setBreadcrumbCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity may not be negative");
+        }
+        breadcrumbs = capacity == 0 ? null : new BreadcrumbRing(capacity);
+        return this;
+    }
+
+    BreadcrumbRing getBreadcrumbs() {
+        return breadcrumbs;
+    }
+
+    /**
+     * Times every message dispatched by the main looper, see {@link #getLooperMonitor()}. Takes
+     * over the looper's message logging.
+     *
+     * @param slowDispatchMillis dispatches at least this slow are logged as warnings with the tag
+     *                           {@link LooperMonitor#TAG}, 0 logs none
+     */
+    public synchronized Settings setLooperMonitorEnabled(boolean enabled, long slowDispatchMillis) {
+        if (slowDispatchMillis < 0) {
+            throw new IllegalArgumentException("slowDispatchMillis may not be negative");
+        }
+        if (looperMonitor != null) {
+            looperMonitor.uninstall();
+            looperMonitor = null;
+        }
+        if (enabled) {
+            looperMonitor = new LooperMonitor(slowDispatchMillis);
+            looperMonitor.install();
+        }
+        return this;
+    }
+
+    /**
+     * @return the dispatch histogram of the main looper, null unless the monitor is enabled
+     */
+    public synchronized LooperMonitor getLooperMonitor() {
+        return looperMonitor;
+    }
+
+    /**
+     * Prints logcat output, on by default
+     */
+    public synchronized Settings setLogcatEnabled(boolean enabled) {
+        removeSink(logcat);
+        if (enabled) {
+            addSink(logcat, LogLevel.FULL);
+        }
+        return this;
+    }
+
+    /**
+     * Writes every record at or above the given level to the sink, on the thread printing records
+     */
+    public synchronized Settings addSink(LogSink sink, LogLevel level) {
+        checkSink(sink, level);
+        return addChannel(new SinkChannel(sink, level));
+    }
+
+    /**
+     * Writes every record at or above the given level to the sink on a thread of its own
+     *
+     * @param queueCapacity number of records that may wait for the sink
+     * @param policy        what happens to records when the queue is full
+     */
+    public synchronized Settings addSink(LogSink sink, LogLevel level, int queueCapacity, OverflowPolicy policy) {
+        checkSink(sink, level);
+        return addChannel(new SinkChannel(sink, level, queueCapacity, policy));
+    }
+
+    public synchronized Settings removeSink(LogSink sink) {
+        SinkChannel[] current = sinks;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].sink == sink) {
+                SinkChannel[] updated = new SinkChannel[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                sinks = updated;
+                current[i].close();
+                break;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return number of records the sink's queue had to drop, 0 for unknown sinks
+     */
+    public long getDroppedCount(LogSink sink) {
+        for (SinkChannel channel : sinks) {
+            if (channel.sink == sink) {
+                return channel.getDroppedCount();
+            }
+        }
+        return 0;
+    }
+
+    private static void checkSink(LogSink sink, LogLevel level) {
+        if (sink == null) {
+            throw new NullPointerException("sink may not be null");
+        }
+        if (level == null) {
+            throw new NullPointerException("level may not be null");
+        }
+    }
+
+    private Settings addChannel(SinkChannel channel) {
+        removeSink(channel.sink);
+        SinkChannel[] current = sinks;
+        SinkChannel[] updated = new SinkChannel[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = channel;
+        sinks = updated;
         return this;
     }
 
+    private void replaceSink(LogSink old, LogSink sink) {
+        if (old != null) {
+            removeSink(old);
+        }
+        if (sink != null) {
+            addSink(sink, LogLevel.FULL);
+        }
+    }
+
+    SinkChannel[] getSinks() {
+        return sinks;
+    }
+
+    /**
+     * Waits until every sink wrote the records it got so far
+     *
+     * @return false if the timeout elapsed first
+     */
+    boolean awaitSinksFlushed(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean flushed = true;
+        for (SinkChannel channel : sinks) {
+            flushed &= channel.awaitFlush(Math.max(0, deadline - System.currentTimeMillis()));
+        }
+        return flushed;
+    }
+
     public Settings setMethodOffset(int offset) {
         this.methodOffset = offset;
         return this;
@@ -47,6 +350,30 @@ public final class Settings {
         return logLevel;
     }
 
+    public int getJsonMaxArrayItems() {
+        return jsonMaxArrayItems;
+    }
+
+    public int getJsonMaxStringLength() {
+        return jsonMaxStringLength;
+    }
+
+    public int getMaxFormattedLength() {
+        return maxFormattedLength;
+    }
+
+    public FileAppender getFileAppender() {
+        return fileAppender;
+    }
+
+    public MappedLogRing getMappedLogRing() {
+        return mappedLogRing;
+    }
+
+    public BinaryLogWriter getBinaryLog() {
+        return binaryLog;
+    }
+
     public int getMethodOffset() {
         return methodOffset;
     }
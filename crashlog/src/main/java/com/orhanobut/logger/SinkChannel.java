@@ -0,0 +1,173 @@
+package com.orhanobut.logger;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects one {@link LogSink} to the printer: applies the sink's level filter and, if the
+ * sink was registered with a queue, hands records to the sink's own thread through a bounded
+ * queue. Without a queue records are written on the thread printing records.
+ */
+final class SinkChannel {
+
+    private static final String TAG = "SinkChannel";
+
+    /**
+     * Queued by {@link #close()} to wake the worker up, never delivered
+     */
+    private static final LogRecord WAKE_UP = new LogRecord(0, "", new String[0], 0, 0, "", null, null);
+
+    final LogSink sink;
+    private final int minPriority;
+    private final BlockingQueue<LogRecord> queue;
+    private final OverflowPolicy policy;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final Object lock = new Object();
+    private long delivered;
+
+    private volatile boolean closed;
+    private Thread worker;
+
+    SinkChannel(LogSink sink, LogLevel level) {
+        this.sink = sink;
+        this.minPriority = level.getMinPriority();
+        this.queue = null;
+        this.policy = null;
+    }
+
+    SinkChannel(LogSink sink, LogLevel level, int queueCapacity, OverflowPolicy policy) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy may not be null");
+        }
+        this.sink = sink;
+        this.minPriority = level.getMinPriority();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.policy = policy;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Must only be called by the thread printing records
+     */
+    void write(LogRecord record) {
+        if (record.logType < minPriority || closed) {
+            return;
+        }
+        if (queue == null) {
+            deliver(record);
+            return;
+        }
+        ensureStarted();
+        boolean accepted;
+        if (policy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(record);
+                accepted = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(record);
+        }
+        if (accepted) {
+            queued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until the queued records were handed to the sink and the sink flushed them
+     *
+     * @return false if the timeout elapsed first
+     */
+    boolean awaitFlush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        if (queue != null) {
+            long target = queued.get();
+            synchronized (lock) {
+                while (delivered < target) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        return false;
+                    }
+                    try {
+                        lock.wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            }
+        }
+        return sink.awaitFlush(Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
+    /**
+     * Stops taking records, the worker thread ends once the queue is empty. The worker is woken
+     * up without an interrupt, which would close a sink's channel in the middle of a write.
+     */
+    void close() {
+        closed = true;
+        if (queue != null) {
+            //a full queue means the worker is not waiting anyway
+            queue.offer(WAKE_UP);
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread("crashlog-sink-" + sink.getClass().getSimpleName()) {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            if (closed && queue.isEmpty()) {
+                return;
+            }
+            LogRecord record;
+            try {
+                record = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (record == WAKE_UP) {
+                continue;
+            }
+            deliver(record);
+            synchronized (lock) {
+                delivered++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void deliver(LogRecord record) {
+        try {
+            sink.write(record);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "an error occured in log sink " + sink, e);
+        }
+    }
+}
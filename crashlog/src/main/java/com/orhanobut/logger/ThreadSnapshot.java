@@ -0,0 +1,211 @@
+package com.orhanobut.logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stacks of all threads of the process, taken within a time budget.
+ * <p>
+ * Threads with identical stacks, such as idle pool workers, share one group that is printed
+ * once with the names of its threads. Threads left when the budget runs out are only counted,
+ * so a process with hundreds of threads still produces a short report in bounded time.
+ */
+final class ThreadSnapshot {
+
+    /**
+     * Threads named per group, the rest of a group is only counted
+     */
+    private static final int MAX_NAMES = 8;
+
+    private static final class Group {
+        final StackTraceElement[] trace;
+        final Thread.State state;
+        final List<Thread> threads = new ArrayList<>(1);
+        int count;
+
+        Group(StackTraceElement[] trace, Thread.State state) {
+            this.trace = trace;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Key comparing stacks by content, the hash is computed once
+     */
+    private static final class StackKey {
+        final StackTraceElement[] trace;
+        final int hash;
+
+        StackKey(StackTraceElement[] trace) {
+            this.trace = trace;
+            this.hash = Arrays.hashCode(trace);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StackKey && hash == ((StackKey) o).hash
+                    && Arrays.equals(trace, ((StackKey) o).trace);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final List<Group> groups;
+    private final int threadCount;
+    private final int skipped;
+    private final long elapsedNanos;
+
+    private ThreadSnapshot(List<Group> groups, int threadCount, int skipped, long elapsedNanos) {
+        this.groups = groups;
+        this.threadCount = threadCount;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Takes the stacks of every live thread except the calling one
+     *
+     * @param budgetMillis threads left after this many milliseconds are skipped
+     */
+    static ThreadSnapshot capture(long budgetMillis) {
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1000000;
+        Thread[] threads = enumerate();
+        Thread current = Thread.currentThread();
+
+        Map<StackKey, Group> byStack = new HashMap<>();
+        List<Group> groups = new ArrayList<>();
+        int count = 0;
+        int skipped = 0;
+        for (Thread thread : threads) {
+            if (thread == null || thread == current) {
+                continue;
+            }
+            count++;
+            if (System.nanoTime() - deadline > 0) {
+                skipped++;
+                continue;
+            }
+            StackTraceElement[] trace = thread.getStackTrace();
+            StackKey key = new StackKey(trace);
+            Group group = byStack.get(key);
+            if (group == null) {
+                group = new Group(trace, thread.getState());
+                byStack.put(key, group);
+                groups.add(group);
+            }
+            if (group.threads.size() < MAX_NAMES) {
+                group.threads.add(thread);
+            }
+            group.count++;
+        }
+        return new ThreadSnapshot(groups, count, skipped, System.nanoTime() - start);
+    }
+
+    private static Thread[] enumerate() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        //enumerate silently drops threads that do not fit
+        while (root.enumerate(threads, true) == threads.length) {
+            threads = new Thread[threads.length * 2];
+        }
+        return threads;
+    }
+
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Encodes the snapshot straight into the writer's buffer
+     */
+    void copyTo(CrashWriter writer) throws IOException {
+        writer.putInt(threadCount);
+        writer.putText(" threads, ");
+        writer.putInt(groups.size());
+        writer.putText(" stacks");
+        if (skipped > 0) {
+            writer.putText(", ");
+            writer.putInt(skipped);
+            writer.putText(" skipped after the time budget");
+        }
+        writer.put((byte) '\n');
+        for (Group group : groups) {
+            writer.put((byte) '\n');
+            if (group.count > 1) {
+                writer.putInt(group.count);
+                writer.putText(" threads ");
+            }
+            for (int i = 0; i < group.threads.size(); i++) {
+                if (i > 0) {
+                    writer.putText(", ");
+                }
+                Thread thread = group.threads.get(i);
+                writer.put((byte) '"');
+                writer.putText(thread.getName());
+                writer.putText("\" tid=");
+                writer.putLong(thread.getId());
+            }
+            if (group.count > group.threads.size()) {
+                writer.putText(" ... ");
+                writer.putInt(group.count - group.threads.size());
+                writer.putText(" more");
+            }
+            writer.put((byte) ' ');
+            writer.putText(group.state.name());
+            writer.put((byte) '\n');
+            for (StackTraceElement frame : group.trace) {
+                writer.putFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * Same layout as {@link #copyTo(CrashWriter)}
+     */
+    void appendTo(StringBuilder out) {
+        out.append(threadCount).append(" threads, ").append(groups.size()).append(" stacks");
+        if (skipped > 0) {
+            out.append(", ").append(skipped).append(" skipped after the time budget");
+        }
+        out.append('\n');
+        for (Group group : groups) {
+            out.append('\n');
+            if (group.count > 1) {
+                out.append(group.count).append(" threads ");
+            }
+            for (int i = 0; i < group.threads.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                Thread thread = group.threads.get(i);
+                out.append('"').append(thread.getName()).append("\" tid=").append(thread.getId());
+            }
+            if (group.count > group.threads.size()) {
+                out.append(" ... ").append(group.count - group.threads.size()).append(" more");
+            }
+            out.append(' ').append(group.state.name()).append('\n');
+            for (StackTraceElement frame : group.trace) {
+                out.append("\tat ").append(frame).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.orhanobut.logger;
+
+/**
+ * Limits for sending reports to the upload endpoint, see
+ * {@link CrashHandler#setUploadEndpoint(java.net.URL, UploadPolicy)}
+ */
+public final class UploadPolicy {
+
+    private int maxReportsPerBatch = 10;
+    private long maxBatchBytes = 1024 * 1024;
+    private long dailyBytes = 5 * 1024 * 1024;
+    private long interval = 15 * 60 * 1000;
+    private long initialBackoff = 30 * 1000;
+    private long maxBackoff = 6 * 60 * 60 * 1000;
+
+    /**
+     * @param maxReportsPerBatch reports sent in one request
+     */
+    public UploadPolicy setMaxReportsPerBatch(int maxReportsPerBatch) {
+        if (maxReportsPerBatch <= 0) {
+            throw new IllegalArgumentException("maxReportsPerBatch must be positive");
+        }
+        this.maxReportsPerBatch = maxReportsPerBatch;
+        return this;
+    }
+
+    /**
+     * @param maxBatchBytes size of the reports sent in one request, a larger report is sent alone
+     */
+    public UploadPolicy setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /**
+     * @param dailyBytes size of the reports sent per day, 0 means unlimited
+     */
+    public UploadPolicy setDailyBytes(long dailyBytes) {
+        this.dailyBytes = dailyBytes;
+        return this;
+    }
+
+    /**
+     * @param interval milliseconds between two looks for new reports
+     */
+    public UploadPolicy setInterval(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * @param initialBackoff milliseconds to wait after the first failed request, doubled for
+     *                       each further failure
+     * @param maxBackoff     longest wait between two failed requests
+     */
+    public UploadPolicy setBackoff(long initialBackoff, long maxBackoff) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("backoff must be positive and initialBackoff <= maxBackoff");
+        }
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    public int getMaxReportsPerBatch() {
+        return maxReportsPerBatch;
+    }
+
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public long getDailyBytes() {
+        return dailyBytes;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+}
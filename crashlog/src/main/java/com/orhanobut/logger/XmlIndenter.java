@@ -0,0 +1,154 @@
+package com.orhanobut.logger;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Re-indents xml while it is pulled through a parser, no document tree or transformer is built.
+ * <p>
+ * Each thread keeps its own parser, so only the first xml logged by a thread pays for creating
+ * one. Text only elements stay on one line, comments and processing instructions are dropped.
+ */
+final class XmlIndenter {
+
+    private static final ThreadLocal<XmlPullParser> LOCAL_PARSER = new ThreadLocal<XmlPullParser>() {
+        @Override
+        protected XmlPullParser initialValue() {
+            return Xml.newPullParser();
+        }
+    };
+
+    private final int indent;
+    private final int maxLength;
+
+    /**
+     * @param maxLength characters of output, 0 for no limit
+     */
+    XmlIndenter(int indent, int maxLength) {
+        this.indent = indent;
+        this.maxLength = maxLength;
+    }
+
+    String format(String xml) throws XmlPullParserException, IOException {
+        XmlPullParser parser = LOCAL_PARSER.get();
+        parser.setInput(new StringReader(xml));
+        try {
+            return indent(parser, xml);
+        } finally {
+            release(parser);
+        }
+    }
+
+    private String indent(XmlPullParser parser, String xml) throws XmlPullParserException, IOException {
+        StringBuilder out = new StringBuilder(maxLength > 0 ? Math.min(xml.length(), maxLength) + 64 : xml.length());
+        int depth = 0;
+        //a start tag whose '>' has not been written yet
+        boolean open = false;
+        //the current element has only text so far
+        boolean inline = false;
+        int event;
+        while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (maxLength > 0 && out.length() > maxLength) {
+                out.setLength(maxLength);
+                out.append("\n... truncated, ").append(xml.length()).append(" characters in total");
+                return out.toString();
+            }
+            switch (event) {
+                case XmlPullParser.START_TAG:
+                    if (open) {
+                        out.append('>');
+                    }
+                    newLine(out, depth);
+                    out.append('<').append(parser.getName());
+                    for (int i = 0, count = parser.getAttributeCount(); i < count; i++) {
+                        out.append(' ').append(parser.getAttributeName(i)).append("=\"");
+                        escape(out, parser.getAttributeValue(i), true);
+                        out.append('"');
+                    }
+                    open = true;
+                    inline = false;
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    if (open) {
+                        out.append("/>");
+                    } else {
+                        if (!inline) {
+                            newLine(out, depth);
+                        }
+                        out.append("</").append(parser.getName()).append('>');
+                    }
+                    open = false;
+                    inline = false;
+                    break;
+                case XmlPullParser.TEXT:
+                    String text = parser.getText().trim();
+                    if (text.length() == 0) {
+                        break;
+                    }
+                    if (open) {
+                        out.append('>');
+                        open = false;
+                        inline = true;
+                    } else {
+                        inline = false;
+                        newLine(out, depth);
+                    }
+                    escape(out, text, false);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Drops the parser's reference to the document, so it does not live as long as the thread
+     */
+    private static void release(XmlPullParser parser) {
+        try {
+            parser.setInput(null);
+        } catch (XmlPullParserException ignored) {
+        }
+    }
+
+    private void newLine(StringBuilder out, int depth) {
+        if (out.length() == 0) {
+            return;
+        }
+        out.append('\n');
+        for (int i = depth * indent; i > 0; i--) {
+            out.append(' ');
+        }
+    }
+
+    private static void escape(StringBuilder out, String text, boolean attribute) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append(attribute ? "&quot;" : "\"");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.orhanobut.logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoggerPrinterTest {
+
+    private final List<LogRecord> records = new ArrayList<>();
+
+    private final LogSink capture = new LogSink() {
+        @Override
+        public void write(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public boolean awaitFlush(long timeoutMillis) {
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Logger.init("APP").setLogcatEnabled(false).addSink(capture, LogLevel.FULL);
+    }
+
+    @After
+    public void tearDown() {
+        Logger.getSettings().removeSink(capture).setLogLevel(LogLevel.FULL).setLogcatEnabled(true);
+    }
+
+    @Test
+    public void filteredCallDoesNotLeakLocalTag() {
+        Logger.getSettings().setLogLevel(LogLevel.WARN);
+
+        Logger.t("LEAKED", 0).d("filtered");
+        Logger.w("next");
+
+        assertEquals(1, records.size());
+        assertTrue(records.get(0).getTag(), !records.get(0).getTag().contains("LEAKED"));
+    }
+}
@@ -0,0 +1,236 @@
+package com.orhanobut.logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ReportUploader} against an http server inside the test process
+ */
+public class ReportUploaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long NOW = 1470000000000L;
+
+    private HttpServer server;
+    private URL endpoint;
+    private final List<String> bodies = new ArrayList<>();
+    private volatile int status = 200;
+    //bodies containing it are answered with 400
+    private volatile String rejected;
+
+    private File root;
+    private File versionDir;
+    private RetentionManager retention;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/reports", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    in = new GZIPInputStream(in);
+                }
+                String body = new String(readAll(in), UTF_8);
+                synchronized (bodies) {
+                    bodies.add(body);
+                }
+                String reject = rejected;
+                exchange.sendResponseHeaders(reject != null && body.contains(reject) ? 400 : status, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        endpoint = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/reports");
+
+        root = File.createTempFile("crashlog", "");
+        root.delete();
+        versionDir = new File(root, "1_1.0");
+        versionDir.mkdirs();
+        retention = new RetentionManager(root, null);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        deleteAll(root);
+    }
+
+    @Test
+    public void sendsReportsInBatchesAndRemembersProgress() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            addReport("crash-" + i + ".txt", "report " + i, NOW + i);
+        }
+        UploadPolicy policy = new UploadPolicy().setMaxReportsPerBatch(2);
+
+        assertEquals(5, newUploader(policy).upload(NOW + 10));
+        assertEquals(3, bodies.size());
+        assertEquals("1_1.0/crash-0.txt\t8\nreport 01_1.0/crash-1.txt\t8\nreport 1", bodies.get(0));
+        assertEquals("1_1.0/crash-4.txt\t8\nreport 4", bodies.get(2));
+
+        //a new uploader continues from the saved state
+        addReport("crash-5.txt", "report 5", NOW + 5);
+        assertEquals(1, newUploader(policy).upload(NOW + 20));
+        assertEquals(4, bodies.size());
+        assertEquals("1_1.0/crash-5.txt\t8\nreport 5", bodies.get(3));
+    }
+
+    @Test
+    public void sendsReportsWrittenAfterTheClockWentBack() throws IOException {
+        addReport("crash-0.txt", "report 0", NOW);
+        ReportUploader uploader = newUploader(new UploadPolicy());
+        assertEquals(1, uploader.upload(NOW + 10));
+
+        addReport("crash-1.txt", "report 1", NOW - 60000);
+        assertEquals(1, uploader.upload(NOW + 20));
+        assertEquals("1_1.0/crash-1.txt\t8\nreport 1", bodies.get(1));
+    }
+
+    @Test
+    public void countsOnlyReportsThatStillExist() throws IOException {
+        addReport("crash-0.txt", "report 0", NOW);
+        addReport("crash-1.txt", "report 1", NOW + 1);
+        new File(versionDir, "crash-0.txt").delete();
+
+        assertEquals(1, newUploader(new UploadPolicy()).upload(NOW + 10));
+        assertEquals("1_1.0/crash-1.txt\t8\nreport 1", bodies.get(0));
+    }
+
+    @Test
+    public void backsOffExponentiallyAfterFailures() throws IOException {
+        addReport("crash-0.txt", "report 0", NOW);
+        UploadPolicy policy = new UploadPolicy().setBackoff(1000, 3000);
+        ReportUploader uploader = newUploader(policy);
+
+        status = 500;
+        assertEquals(0, uploader.upload(NOW));
+        //waiting for 1s
+        assertEquals(0, uploader.upload(NOW + 999));
+        assertEquals(1, bodies.size());
+        assertEquals(0, uploader.upload(NOW + 1000));
+        //waiting for 2s, the backoff survives a restart
+        uploader = newUploader(policy);
+        assertEquals(0, uploader.upload(NOW + 2999));
+        assertEquals(2, bodies.size());
+        assertEquals(0, uploader.upload(NOW + 3000));
+        //capped at 3s
+        assertEquals(0, uploader.upload(NOW + 5999));
+        assertEquals(3, bodies.size());
+
+        status = 200;
+        assertEquals(1, uploader.upload(NOW + 6000));
+        assertEquals(0, uploader.upload(NOW + 6001));
+        assertEquals(4, bodies.size());
+    }
+
+    @Test
+    public void leavesOutReportsRejectedByTheServer() throws IOException {
+        addReport("crash-0.txt", "report 0", NOW);
+        addReport("crash-1.txt", "invalid", NOW + 1);
+        addReport("crash-2.txt", "report 2", NOW + 2);
+        addReport("crash-3.txt", "report 3", NOW + 3);
+        rejected = "invalid";
+        UploadPolicy policy = new UploadPolicy().setMaxReportsPerBatch(3);
+        ReportUploader uploader = newUploader(policy);
+
+        //the rejected batch is split, no backoff
+        assertEquals(3, uploader.upload(NOW + 10));
+        assertEquals(5, bodies.size());
+        assertEquals("1_1.0/crash-0.txt\t8\nreport 0", bodies.get(1));
+        assertEquals("1_1.0/crash-1.txt\t7\ninvalid", bodies.get(2));
+        assertEquals("1_1.0/crash-2.txt\t8\nreport 2", bodies.get(3));
+        //batches again after the rejected one
+        assertEquals("1_1.0/crash-3.txt\t8\nreport 3", bodies.get(4));
+        assertEquals(0, uploader.upload(NOW + 11));
+        assertEquals(5, bodies.size());
+    }
+
+    @Test
+    public void keepsWithinTheDailyBudget() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            addReport("crash-" + i + ".txt", "report " + i, NOW + i);
+        }
+        addReport("crash-huge.txt", "this report is larger than a day of uploads", NOW + 4);
+        addReport("crash-5.txt", "report 5", NOW + 5);
+        UploadPolicy policy = new UploadPolicy().setMaxReportsPerBatch(1).setDailyBytes(20);
+        ReportUploader uploader = newUploader(policy);
+
+        assertEquals(2, uploader.upload(NOW + 10));
+        assertEquals(0, uploader.upload(NOW + 20));
+        //the next day the budget starts over, the huge report is skipped
+        assertEquals(2, uploader.upload(NOW + 24L * 60 * 60 * 1000));
+        assertEquals(1, uploader.upload(NOW + 48L * 60 * 60 * 1000));
+        assertEquals(5, bodies.size());
+        for (String body : bodies) {
+            assertTrue(body, !body.contains("huge"));
+        }
+    }
+
+    @Test
+    public void sendsTheCompressedFileUnderItsOwnName() throws IOException {
+        addReport("crash-0.txt", "report 0", NOW);
+        //compressed after it was recorded
+        File compressed = LogCompressor.compress(new File(versionDir, "crash-0.txt"), 9);
+
+        assertEquals(1, newUploader(new UploadPolicy()).upload(NOW + 10));
+        assertTrue(bodies.get(0), bodies.get(0).startsWith("1_1.0/crash-0.txt.gz\t" + compressed.length() + "\n"));
+    }
+
+    private ReportUploader newUploader(UploadPolicy policy) {
+        return new ReportUploader(retention, new File(root, ReportUploader.STATE_NAME), endpoint, policy);
+    }
+
+    private void addReport(String name, String content, long time) throws IOException {
+        File file = new File(versionDir, name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+        file.setLastModified(time);
+        retention.record(file);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
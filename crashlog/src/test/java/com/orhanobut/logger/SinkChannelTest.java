@@ -0,0 +1,67 @@
+package com.orhanobut.logger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SinkChannelTest {
+
+    @Test
+    public void closeStopsTheWorker() throws InterruptedException {
+        ClosingSink sink = new ClosingSink();
+        SinkChannel channel = new SinkChannel(sink, LogLevel.FULL, 16, OverflowPolicy.DROP);
+        channel.write(record("first"));
+        channel.write(record("second"));
+        while (!sink.writing) {
+            Thread.sleep(1);
+        }
+        Thread worker = findThread("crashlog-sink-ClosingSink");
+        assertTrue(worker != null && worker.isAlive());
+
+        //closed while the worker is busy with a record and another one is queued
+        channel.close();
+        sink.release = true;
+        worker.join(1000);
+
+        assertTrue(!worker.isAlive());
+        assertEquals(2, sink.records.size());
+    }
+
+    private static LogRecord record(String message) {
+        return new LogRecord(3, "TAG", new String[]{message}, 0, 1, "main", message, null);
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        return null;
+    }
+
+    private static final class ClosingSink implements LogSink {
+
+        final List<LogRecord> records = new ArrayList<>();
+        volatile boolean writing;
+        volatile boolean release;
+
+        @Override
+        public void write(LogRecord record) {
+            writing = true;
+            while (!release) {
+                Thread.yield();
+            }
+            records.add(record);
+        }
+
+        @Override
+        public boolean awaitFlush(long timeoutMillis) {
+            return true;
+        }
+    }
+}